@@ -0,0 +1,256 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * A player that passes each request to another player on a dedicated audio thread,
+ * so that a slow player never blocks the caller (usually the Swing event thread).
+ *
+ * <p>Requests run in order. If a request to play a phrase is still waiting when a
+ * newer one arrives, the older one is dropped, since only the latest phrase matters.
+ * Listeners hear about each phrase that finished starting or failed, through the
+ * given callback executor. (Unchecked exceptions from the other player are reported
+ * as failures too, and the audio thread keeps going.)
+ */
+class AsyncPlayer implements Player {
+  private final Player delegate;
+  private final Executor callbacks;
+  private final List<Listener> listeners = new ArrayList<Listener>();
+  private final Thread audioThread;
+
+  // guarded by this
+  private final LinkedList<Request> queue = new LinkedList<Request>();
+  private boolean stopped = false;
+  private int submitted = 0;
+  private int superseded = 0;
+  private int failed = 0;
+  private long totalDispatchNanos = 0;
+  private long maxDispatchNanos = 0;
+  private int dispatched = 0;
+
+  /**
+   * Creates a player and starts its audio thread.
+   * @param callbacks runs listener callbacks; for example, on the Swing event thread
+   */
+  AsyncPlayer(Player delegate, Executor callbacks) {
+    this.delegate = delegate;
+    this.callbacks = callbacks;
+    this.audioThread = new Thread(new Runnable() {
+      public void run() {
+        runRequests();
+      }
+    }, "AsyncPlayer audio");
+    audioThread.setDaemon(true);
+    audioThread.start();
+  }
+
+  /**
+   * Adds a listener. Must be called before any phrases are played.
+   */
+  void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public Sound[] getSounds() {
+    return delegate.getSounds();
+  }
+
+  public Sound getDefaultSound() {
+    return delegate.getDefaultSound();
+  }
+
+  public void setSound(final Sound sound) {
+    submit(new Request(false) {
+      @Override
+      void run() {
+        delegate.setSound(sound);
+      }
+    });
+  }
+
+  public void play(final Phrase phrase, final int startNote) {
+    submit(new Request(true) {
+      @Override
+      void run() throws UnavailableException {
+        delegate.play(phrase, startNote);
+      }
+    });
+  }
+
+  public void prepare(final Phrase phrase, final int startNote) {
+    submit(new Request(false) {
+      @Override
+      void run() throws UnavailableException {
+        delegate.prepare(phrase, startNote);
+      }
+    });
+  }
+
+  /**
+   * Waits for requests already submitted to finish, then shuts down the delegate.
+   */
+  public void shutdown() {
+    synchronized (this) {
+      stopped = true;
+      notifyAll();
+    }
+    try {
+      audioThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    delegate.shutdown();
+  }
+
+  // === statistics ===
+
+  /**
+   * Returns the number of requests waiting to run.
+   */
+  synchronized int getQueueDepth() {
+    return queue.size();
+  }
+
+  synchronized int getSubmittedCount() {
+    return submitted;
+  }
+
+  /**
+   * Returns the number of phrases that were dropped because a newer one arrived.
+   */
+  synchronized int getSupersededCount() {
+    return superseded;
+  }
+
+  synchronized int getFailedCount() {
+    return failed;
+  }
+
+  /**
+   * Returns the average time from submitting a request to starting it, in
+   * milliseconds.
+   */
+  synchronized double getAverageDispatchMillis() {
+    return dispatched == 0 ? 0.0 : totalDispatchNanos / 1e6 / dispatched;
+  }
+
+  synchronized double getMaxDispatchMillis() {
+    return maxDispatchNanos / 1e6;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "AsyncPlayer(" + queue.size() + " queued, " + submitted + " submitted, " +
+        superseded + " superseded, " + failed + " failed)";
+  }
+
+  // === private methods ===
+
+  private synchronized void submit(Request request) {
+    if (stopped) {
+      throw new IllegalStateException("player was shut down");
+    }
+    if (request.isPlay) {
+      for (Iterator<Request> it = queue.iterator(); it.hasNext();) {
+        if (it.next().isPlay) {
+          it.remove();
+          superseded++;
+        }
+      }
+    }
+    queue.add(request);
+    submitted++;
+    notifyAll();
+  }
+
+  private void runRequests() {
+    while (true) {
+      Request request;
+      synchronized (this) {
+        while (queue.isEmpty() && !stopped) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (queue.isEmpty()) {
+          return;
+        }
+        request = queue.removeFirst();
+        long latency = System.nanoTime() - request.submitTime;
+        totalDispatchNanos += latency;
+        maxDispatchNanos = Math.max(maxDispatchNanos, latency);
+        dispatched++;
+      }
+      try {
+        request.run();
+        if (request.isPlay) {
+          firePlayed();
+        }
+      } catch (UnavailableException e) {
+        fail(e);
+      } catch (RuntimeException e) {
+        // a bug in the delegate shouldn't stop the audio thread
+        fail(new UnavailableException(e));
+      }
+    }
+  }
+
+  private void fail(UnavailableException e) {
+    synchronized (this) {
+      failed++;
+    }
+    fireFailed(e);
+  }
+
+  private void firePlayed() {
+    callbacks.execute(new Runnable() {
+      public void run() {
+        for (Listener listener : listeners) {
+          listener.played();
+        }
+      }
+    });
+  }
+
+  private void fireFailed(final UnavailableException e) {
+    callbacks.execute(new Runnable() {
+      public void run() {
+        for (Listener listener : listeners) {
+          listener.failed(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Hears when phrases start playing.
+   */
+  interface Listener {
+    /** Called after the player started a phrase. */
+    void played();
+
+    /** Called when a request couldn't be carried out. */
+    void failed(UnavailableException e);
+  }
+
+  /**
+   * A call to make on the delegate.
+   */
+  private abstract static class Request {
+    final boolean isPlay;
+    final long submitTime = System.nanoTime();
+
+    Request(boolean isPlay) {
+      this.isPlay = isPlay;
+    }
+
+    abstract void run() throws UnavailableException;
+  }
+}
@@ -0,0 +1,50 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+/**
+ * Answers "can this set of notes be transposed to fit in this scale?" with a single
+ * memory read. The table is a 4096 x 4096 bit matrix (2 MB) with a row for each
+ * possible scale; bit p of row s is set if some rotation of note set p is a subset of s.
+ *
+ * <p>Each row is built by visiting every subset of each distinct rotation of the scale
+ * (see {@link RotationTable}). The whole table is built the first time it's used.
+ */
+class ContainmentTable {
+  private static final int SIZE = RotationTable.SIZE;
+  private static final int WORDS_PER_ROW = SIZE / 64;
+
+  private final long[] bits = new long[SIZE * WORDS_PER_ROW];
+
+  private ContainmentTable() {
+    for (int scale = 0; scale < SIZE; scale++) {
+      int row = scale * WORDS_PER_ROW;
+      for (int i = 0; i < RotationTable.getPeriod(scale); i++) {
+        int rotated = RotationTable.getRotation(scale, i);
+        for (int subset = rotated; ; subset = (subset - 1) & rotated) {
+          bits[row + (subset >>> 6)] |= 1L << subset;
+          if (subset == 0) {
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns true if some rotation of the subset fits within the scale.
+   * (The same as {@link RotationTable#containsAnywhere}.)
+   */
+  static boolean containsAnywhere(int scaleBits, int subsetBits) {
+    if (((scaleBits | subsetBits) & ~(SIZE - 1)) != 0) {
+      throw new IllegalArgumentException("bad note set: " + Integer.toHexString(scaleBits) +
+          ", " + Integer.toHexString(subsetBits));
+    }
+    return (Holder.TABLE.bits[scaleBits * WORDS_PER_ROW + (subsetBits >>> 6)] &
+        (1L << subsetBits)) != 0;
+  }
+
+  // initialized on first use
+  private static class Holder {
+    static final ContainmentTable TABLE = new ContainmentTable();
+  }
+}
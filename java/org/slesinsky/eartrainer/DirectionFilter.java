@@ -22,17 +22,28 @@ enum DirectionFilter {
   }
   
   boolean allows(Interval interval) {
-    return this == BOTH
-        || (this == ASCENDING && interval.isAscending())
-        || (this == DESCENDING && interval.isDescending());
+    return allows(interval.getHalfSteps());
   }
 
   boolean allows(Phrase phrase) {
-    for (Interval interval : phrase.getIntervals()) {
-      if (!allows(interval)) {
+    return allowsPhrase(phrase.getCode());
+  }
+
+  /**
+   * Returns true if every interval in the given {@link PhraseCode} goes in an allowed direction.
+   */
+  boolean allowsPhrase(long code) {
+    for (int i = 0; i < PhraseCode.length(code); i++) {
+      if (!allows(PhraseCode.get(code, i))) {
         return false;
       }
     }
     return true;
   }
+
+  private boolean allows(int halfSteps) {
+    return this == BOTH
+        || (this == ASCENDING && halfSteps >= 0)
+        || (this == DESCENDING && halfSteps <= 0);
+  }
 }
@@ -1,10 +1,15 @@
 // Copyright 2009 Brian Slesinsky
 package org.slesinsky.eartrainer;
 
+import javax.sound.midi.Synthesizer;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JTabbedPane;
+import javax.swing.SwingUtilities;
+import java.awt.Toolkit;
+import java.io.File;
 import java.util.Random;
+import java.util.concurrent.Executor;
 
 /**
  * A Swing app that quizzes the user to identify each interval in a random phrase.
@@ -12,6 +17,25 @@ import java.util.Random;
  * in it.
  */
 public class EarTrainer {
+  /**
+   * A system property that chooses how phrases are played: "sequencer" (the default)
+   * uses the midi sequencer, "receiver" sends messages to the synthesizer directly,
+   * and "pcm" plays audio rendered ahead of time (see {@link PcmRenderer}).
+   */
+  static final String PLAYER_PROPERTY = "eartrainer.player";
+
+  /**
+   * A system property that, if "all", loads every instrument in the background at
+   * startup, so that changing the sound never has to wait.
+   */
+  static final String PRELOAD_PROPERTY = "eartrainer.preload";
+
+  /**
+   * A system property with the path of a SoundFont 2 file to play sounds from,
+   * instead of the synthesizer's default soundbank. Samples are loaded only for the
+   * sounds that are used.
+   */
+  static final String SOUNDFONT_PROPERTY = "eartrainer.soundfont";
 
   public static void main(String[] args) throws UnavailableException {
     App app = makeApp();
@@ -24,7 +48,9 @@ public class EarTrainer {
     IntervalChoices choices = new IntervalChoices();
     ScoreKeeper scoreKeeper = new ScoreKeeper();
     QuestionChooser chooser = new QuestionChooser(new Random(), scoreKeeper);
-    SequencePlayer player = new SequencePlayer();
+    chooser.setCatalog(PhraseCatalog.openDefault());
+    Player player = makeAsyncPlayer(makePlayer(getProperty(PLAYER_PROPERTY, "sequencer"),
+        getProperty(SOUNDFONT_PROPERTY, null)));
     Quizzer quizzer = new Quizzer(chooser, choices, player, scoreKeeper);
     JComponent quizPage = QuizPage.create(choices, chooser, scoreKeeper, quizzer, player);
 
@@ -38,9 +64,9 @@ public class EarTrainer {
   public static class App {
     private final JComponent page;
     private final Quizzer quizzer;
-    private final SequencePlayer player;
+    private final Player player;
 
-    App(JComponent page, Quizzer quizzer, SequencePlayer player) {
+    App(JComponent page, Quizzer quizzer, Player player) {
       this.page = page;
       this.quizzer = quizzer;
       this.player = player;
@@ -61,6 +87,70 @@ public class EarTrainer {
     }
   }
 
+  private static Player makePlayer(String name, String soundFontPath)
+      throws UnavailableException {
+    boolean pcm = name.equals("pcm");
+    if (!pcm && !name.equals("sequencer") && !name.equals("receiver")) {
+      throw new UnavailableException("unknown player: " + name);
+    }
+    SoundCatalog sounds = null;
+    if (soundFontPath != null) {
+      Profiler p = new Profiler();
+      sounds = SoundCatalog.open(new File(soundFontPath));
+      p.log("read SoundFont presets");
+    }
+    // the pcm player's renderer opens the synthesizer itself
+    Synthesizer synth =
+        pcm ? MidiPlayer.getDefaultSynthesizer() : MidiPlayer.openDefaultSynthesizer();
+    if (sounds == null) {
+      sounds = MidiPlayer.getDefaultSounds(synth);
+    }
+    MidiPlayer result;
+    if (name.equals("sequencer")) {
+      result = new SequencePlayer(synth, sounds);
+    } else if (name.equals("receiver")) {
+      result = new ReceiverPlayer(synth, sounds);
+    } else {
+      result = new PcmPlayer(synth, sounds);
+    }
+    if ("all".equals(getProperty(PRELOAD_PROPERTY, null))) {
+      result.preloadAllSounds();
+    }
+    return result;
+  }
+
+  /**
+   * Wraps a player so that it never blocks the event thread.
+   */
+  private static Player makeAsyncPlayer(Player player) {
+    AsyncPlayer result = new AsyncPlayer(player, new Executor() {
+      public void execute(Runnable task) {
+        SwingUtilities.invokeLater(task);
+      }
+    });
+    result.addListener(new AsyncPlayer.Listener() {
+      public void played() {
+      }
+
+      public void failed(UnavailableException e) {
+        Toolkit.getDefaultToolkit().beep();
+        e.printStackTrace(System.err);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Returns a system property, or the default if it isn't set or can't be read.
+   */
+  private static String getProperty(String name, String defaultValue) {
+    try {
+      return System.getProperty(name, defaultValue);
+    } catch (SecurityException e) {
+      return defaultValue; // probably running as an applet
+    }
+  }
+
   private static JFrame makeWindow(JComponent content) {
     JFrame frame = new JFrame("Ear Trainer");
     frame.getContentPane().add(content);
@@ -0,0 +1,244 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.BitSet;
+
+/**
+ * A scale in any {@link Tuning}: a set of steps within the octave, relative to
+ * the tonic. (Step 0 is the tonic.)
+ *
+ * <p>Tunings with up to 64 divisions store the steps in a single long, so the set
+ * operations are a few machine instructions, like the int in {@link Scale}. Larger
+ * tunings fall back to a BitSet. The 12-tone code paths still use Scale directly.
+ */
+abstract class EdoScale {
+  private static final int MAX_LONG_DIVISIONS = 64;
+
+  private final Tuning tuning;
+
+  private EdoScale(Tuning tuning) {
+    this.tuning = tuning;
+  }
+
+  /**
+   * Creates a scale from a list of steps. Steps outside the octave are moved into it.
+   */
+  static EdoScale of(Tuning tuning, int... steps) {
+    if (tuning.getDivisions() <= MAX_LONG_DIVISIONS) {
+      long bits = 0;
+      for (int step : steps) {
+        bits |= 1L << tuning.normalize(step);
+      }
+      return new LongScale(tuning, bits);
+    }
+    BitSet bits = new BitSet(tuning.getDivisions());
+    for (int step : steps) {
+      bits.set(tuning.normalize(step));
+    }
+    return new BitSetScale(tuning, bits);
+  }
+
+  /**
+   * Converts a 12-tone scale.
+   */
+  static EdoScale fromScale(Scale scale) {
+    return new LongScale(Tuning.EDO_12, scale.getBits());
+  }
+
+  /**
+   * Returns the notes in a phrase, relative to its first note and moved into one
+   * octave, as a scale.
+   * @param intervals the phrase's intervals, in steps of the tuning
+   */
+  static EdoScale fromPhrase(Tuning tuning, int[] intervals) {
+    int[] steps = new int[intervals.length + 1];
+    for (int i = 0; i < intervals.length; i++) {
+      steps[i + 1] = steps[i] + intervals[i];
+    }
+    return of(tuning, steps);
+  }
+
+  Tuning getTuning() {
+    return tuning;
+  }
+
+  abstract boolean contains(int step);
+
+  abstract int getNoteCount();
+
+  /**
+   * Rotates the scale by the given number of steps. (The tonic moves to that step.)
+   */
+  abstract EdoScale rotate(int steps);
+
+  abstract boolean containsWithoutRotation(EdoScale candidate);
+
+  /**
+   * Returns true if some rotation of the candidate fits within this scale.
+   */
+  boolean containsAnywhere(EdoScale candidate) {
+    checkTuning(candidate);
+    for (int i = 0; i < tuning.getDivisions(); i++) {
+      if (containsWithoutRotation(candidate.rotate(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the steps in the scale, in ascending order.
+   */
+  int[] getSteps() {
+    int[] result = new int[getNoteCount()];
+    int next = 0;
+    for (int i = 0; i < tuning.getDivisions(); i++) {
+      if (contains(i)) {
+        result[next++] = i;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder("EdoScale(" + tuning + ":");
+    for (int step : getSteps()) {
+      result.append(" ").append(step);
+    }
+    return result.append(")").toString();
+  }
+
+  void checkTuning(EdoScale other) {
+    if (!tuning.equals(other.tuning)) {
+      throw new IllegalArgumentException("different tunings: " + tuning + " and " +
+          other.tuning);
+    }
+  }
+
+  /**
+   * A scale with at most 64 divisions, stored as a bitmask.
+   */
+  private static class LongScale extends EdoScale {
+    private final long bits;
+    private final long allBits;
+    private final int divisions;
+
+    LongScale(Tuning tuning, long bits) {
+      super(tuning);
+      this.divisions = tuning.getDivisions();
+      this.allBits = divisions == 64 ? -1L : (1L << divisions) - 1;
+      if ((bits & ~allBits) != 0) {
+        throw new IllegalArgumentException("bad scale bits: " + Long.toHexString(bits));
+      }
+      this.bits = bits;
+    }
+
+    @Override
+    boolean contains(int step) {
+      return (bits & (1L << getTuning().normalize(step))) != 0;
+    }
+
+    @Override
+    int getNoteCount() {
+      return Long.bitCount(bits);
+    }
+
+    @Override
+    EdoScale rotate(int steps) {
+      return new LongScale(getTuning(), rotateBits(getTuning().normalize(steps)));
+    }
+
+    @Override
+    boolean containsWithoutRotation(EdoScale candidate) {
+      checkTuning(candidate);
+      return (((LongScale) candidate).bits & ~bits) == 0;
+    }
+
+    @Override
+    boolean containsAnywhere(EdoScale candidate) {
+      checkTuning(candidate);
+      LongScale other = (LongScale) candidate;
+      for (int i = 0; i < divisions; i++) {
+        if ((other.rotateBits(i) & ~bits) == 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.valueOf(bits).hashCode() * 31 + divisions;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof LongScale)) {
+        return false;
+      }
+      LongScale other = (LongScale) obj;
+      return bits == other.bits && divisions == other.divisions;
+    }
+
+    private long rotateBits(int steps) {
+      if (steps == 0) {
+        return bits;
+      }
+      return (bits << steps | bits >>> (divisions - steps)) & allBits;
+    }
+  }
+
+  /**
+   * A scale with any number of divisions.
+   */
+  private static class BitSetScale extends EdoScale {
+    private final BitSet bits;
+
+    BitSetScale(Tuning tuning, BitSet bits) {
+      super(tuning);
+      this.bits = bits;
+    }
+
+    @Override
+    boolean contains(int step) {
+      return bits.get(getTuning().normalize(step));
+    }
+
+    @Override
+    int getNoteCount() {
+      return bits.cardinality();
+    }
+
+    @Override
+    EdoScale rotate(int steps) {
+      BitSet result = new BitSet(getTuning().getDivisions());
+      for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+        result.set(getTuning().normalize(i + steps));
+      }
+      return new BitSetScale(getTuning(), result);
+    }
+
+    @Override
+    boolean containsWithoutRotation(EdoScale candidate) {
+      checkTuning(candidate);
+      BitSet extra = (BitSet) ((BitSetScale) candidate).bits.clone();
+      extra.andNot(bits);
+      return extra.isEmpty();
+    }
+
+    @Override
+    public int hashCode() {
+      return bits.hashCode() * 31 + getTuning().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof BitSetScale)) {
+        return false;
+      }
+      BitSetScale other = (BitSetScale) obj;
+      return bits.equals(other.bits) && getTuning().equals(other.getTuning());
+    }
+  }
+}
@@ -15,16 +15,20 @@ class IntervalFilter {
 
   // contains ascending intervals
   private final SortedSet<Interval> enabled;
+  // bit n is set if the ascending interval with n half steps is enabled
+  private final int bits;
 
   IntervalFilter(Interval... intervalsToEnable) {
-    this.enabled = new TreeSet<Interval>();
-    for (Interval interval : intervalsToEnable) {
-      this.enabled.add(interval.toAscending());
-    }
+    this(toSet(intervalsToEnable));
   }
 
   private IntervalFilter(SortedSet<Interval> enabled) {
     this.enabled = enabled;
+    int bits = 0;
+    for (Interval interval : enabled) {
+      bits |= 1 << interval.getHalfSteps();
+    }
+    this.bits = bits;
   }
 
   IntervalFilter enable(Interval choice) {
@@ -48,18 +52,42 @@ class IntervalFilter {
     }        
     return new IntervalFilter(newSet);
   }
+
+  /**
+   * Returns a filter that only allows the intervals in this filter whose bits are set.
+   * (See {@link #getBits}.)
+   */
+  IntervalFilter intersectBits(int bitsToKeep) {
+    SortedSet<Interval> newSet = new TreeSet<Interval>();
+    for (Interval item : enabled) {
+      if ((bitsToKeep & (1 << item.getHalfSteps())) != 0) {
+        newSet.add(item);
+      }
+    }
+    return new IntervalFilter(newSet);
+  }
    
   boolean allows(Interval interval) {
     return enabled.contains(interval.toAscending());
   }
 
   boolean allows(Phrase phrase) {
-    for (Interval interval : phrase.getIntervals()) {
-      if (!allows(interval)) {
-        return false;
-      }
-    }
-    return true;
+    return allowsPhrase(phrase.getCode());
+  }
+
+  /**
+   * Returns true if every interval in the given {@link PhraseCode} is enabled.
+   */
+  boolean allowsPhrase(long code) {
+    return (PhraseCode.getAscendingBits(code) & ~bits) == 0;
+  }
+
+  /**
+   * Returns the enabled intervals as a bitmask. (Bit n is set if the interval
+   * with n half steps is enabled.)
+   */
+  int getBits() {
+    return bits;
   }
 
   Collection<Interval> generate(DirectionFilter filter) {
@@ -98,4 +126,27 @@ class IntervalFilter {
   Interval getLargest() {
     return enabled.last();
   }
+
+  @Override
+  public int hashCode() {
+    return bits;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return (obj instanceof IntervalFilter) && enabled.equals(((IntervalFilter) obj).enabled);
+  }
+
+  @Override
+  public String toString() {
+    return "IntervalFilter(" + enabled + ")";
+  }
+
+  private static SortedSet<Interval> toSet(Interval... intervals) {
+    SortedSet<Interval> result = new TreeSet<Interval>();
+    for (Interval interval : intervals) {
+      result.add(interval.toAscending());
+    }
+    return result;
+  }
 }
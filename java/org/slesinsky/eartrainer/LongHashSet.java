@@ -0,0 +1,114 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+/**
+ * A set of longs using open addressing with linear probing, so that adding
+ * an item doesn't allocate anything unless the table needs to grow.
+ */
+class LongHashSet {
+  // marks an empty slot; the free value itself is tracked separately
+  private static final long FREE = 0L;
+
+  private long[] slots;
+  private int size;
+  private boolean containsFree;
+
+  LongHashSet() {
+    this(16);
+  }
+
+  LongHashSet(int expectedSize) {
+    int capacity = 16;
+    while (capacity < expectedSize * 2) {
+      capacity *= 2;
+    }
+    this.slots = new long[capacity];
+  }
+
+  /**
+   * Adds an item. Returns true if it wasn't already in the set.
+   */
+  boolean add(long item) {
+    if (item == FREE) {
+      if (containsFree) {
+        return false;
+      }
+      containsFree = true;
+      size++;
+      return true;
+    }
+    int mask = slots.length - 1;
+    for (int i = hash(item) & mask; ; i = (i + 1) & mask) {
+      long slot = slots[i];
+      if (slot == FREE) {
+        slots[i] = item;
+        size++;
+        if (size * 2 > slots.length) {
+          grow();
+        }
+        return true;
+      } else if (slot == item) {
+        return false;
+      }
+    }
+  }
+
+  boolean contains(long item) {
+    if (item == FREE) {
+      return containsFree;
+    }
+    int mask = slots.length - 1;
+    for (int i = hash(item) & mask; ; i = (i + 1) & mask) {
+      long slot = slots[i];
+      if (slot == FREE) {
+        return false;
+      } else if (slot == item) {
+        return true;
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the items in the set, in no particular order.
+   */
+  LongList toList() {
+    LongList result = new LongList(size);
+    if (containsFree) {
+      result.add(FREE);
+    }
+    for (long slot : slots) {
+      if (slot != FREE) {
+        result.add(slot);
+      }
+    }
+    return result;
+  }
+
+  private void grow() {
+    long[] oldSlots = slots;
+    slots = new long[oldSlots.length * 2];
+    int mask = slots.length - 1;
+    for (long item : oldSlots) {
+      if (item != FREE) {
+        int i = hash(item) & mask;
+        while (slots[i] != FREE) {
+          i = (i + 1) & mask;
+        }
+        slots[i] = item;
+      }
+    }
+  }
+
+  private static int hash(long item) {
+    long h = item * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
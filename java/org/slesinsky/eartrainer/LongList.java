@@ -0,0 +1,65 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of longs that doesn't box its elements.
+ */
+class LongList implements LongSequence {
+  private long[] items;
+  private int size;
+
+  LongList() {
+    this(16);
+  }
+
+  LongList(int capacity) {
+    this.items = new long[Math.max(capacity, 1)];
+  }
+
+  /**
+   * Creates a list containing the given items. (The list takes ownership of the array.)
+   */
+  LongList(long[] items) {
+    this.items = items.length == 0 ? new long[1] : items;
+    this.size = items.length;
+  }
+
+  void add(long item) {
+    if (size == items.length) {
+      items = Arrays.copyOf(items, size * 2);
+    }
+    items[size++] = item;
+  }
+
+  void addAll(LongSequence other) {
+    for (int i = 0; i < other.size(); i++) {
+      add(other.get(i));
+    }
+  }
+
+  public long get(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + " >= size " + size);
+    }
+    return items[index];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  long[] toArray() {
+    return Arrays.copyOf(items, size);
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+}
@@ -0,0 +1,11 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+/**
+ * A read-only, indexed sequence of longs.
+ */
+interface LongSequence {
+  int size();
+
+  long get(int index);
+}
@@ -0,0 +1,247 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Synthesizer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A player that turns each phrase into a midi sequence, with the sounds from a
+ * synthesizer's default soundbank or a {@link SoundCatalog} opened from a SoundFont
+ * file. Subclasses decide how to play the sequence.
+ *
+ * <p>Instruments are loaded into the synthesizer on a background thread when a
+ * sound is chosen, so that the first note in a new sound doesn't wait for its
+ * samples to load.
+ */
+abstract class MidiPlayer implements Player {
+  static final int BEATS_PER_MINUTE = 80;
+
+  private final Synthesizer synth;
+  private final SoundCatalog sounds;
+  private final SequenceCache cache = new SequenceCache(SequenceCache.DEFAULT_MAX_SEQUENCES);
+  private Sound sound;
+
+  private final ExecutorService loader;
+  // sounds that were loaded or are waiting to be loaded; guarded by itself
+  private final Set<Sound> loaded = new HashSet<Sound>();
+
+  // time to start the first phrase after the sound changed
+  private boolean soundChanged = true;
+  private double firstPlayMillis = -1;
+
+  MidiPlayer(Synthesizer synth, SoundCatalog sounds) {
+    this.synth = synth;
+    this.sounds = sounds;
+    this.loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, "Instrument loader");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  Synthesizer getSynthesizer() {
+    return synth;
+  }
+
+  public Sound[] getSounds() {
+    List<Sound> result = sounds.getSounds();
+    return result.toArray(new Sound[result.size()]);
+  }
+
+  public Sound getDefaultSound() {
+    return sounds.getDefault();
+  }
+
+  public void setSound(Sound sound) {
+    this.sound = sound;
+    cache.clear();
+    soundChanged = true;
+    preload(sound);
+  }
+
+  /**
+   * Starts loading a sound's instrument into the synthesizer in the background,
+   * unless it was already loaded. (Does nothing until the synthesizer is open.)
+   */
+  void preload(Sound sound) {
+    if (!synth.isOpen()) {
+      return;
+    }
+    synchronized (loaded) {
+      if (!loaded.add(sound)) {
+        return;
+      }
+    }
+    final Sound toLoad = sound;
+    loader.execute(new Runnable() {
+      public void run() {
+        Profiler p = new Profiler();
+        try {
+          synth.loadInstrument(sounds.getInstrument(toLoad));
+        } catch (UnavailableException e) {
+          e.printStackTrace(System.err);
+          return;
+        }
+        p.log("loaded instrument " + toLoad);
+      }
+    });
+  }
+
+  /**
+   * Starts loading every sound in the background.
+   */
+  void preloadAllSounds() {
+    for (Sound each : sounds.getSounds()) {
+      preload(each);
+    }
+  }
+
+  /**
+   * Returns how long it took to start the first phrase after the last sound change,
+   * in milliseconds, or -1 if no phrase was played since then.
+   */
+  double getFirstPlayMillis() {
+    return firstPlayMillis;
+  }
+
+  /**
+   * Returns the cache of sequences that were played recently, for its statistics.
+   */
+  SequenceCache getSequenceCache() {
+    return cache;
+  }
+
+  public void play(Phrase phrase, int startNote) throws UnavailableException {
+    if (!soundChanged) {
+      startPhrase(phrase, startNote);
+      return;
+    }
+    Profiler p = new Profiler();
+    long start = System.nanoTime();
+    firstPlayMillis = -1;
+    startPhrase(phrase, startNote);
+    firstPlayMillis = (System.nanoTime() - start) / 1e6;
+    soundChanged = false;
+    p.log("started first phrase with " + getSound());
+  }
+
+  /**
+   * Builds the phrase's sequence ahead of time.
+   */
+  public void prepare(Phrase phrase, int startNote) throws UnavailableException {
+    getSequence(phrase, startNote);
+  }
+
+  /**
+   * Starts playing a phrase in a tuning other than 12-tone. (Not part of
+   * {@link Player} yet, since the quiz only asks 12-tone questions.)
+   * @param startNote the midi note number of the first note
+   * @param intervals the phrase's intervals, in steps of the tuning
+   */
+  void play(Tuning tuning, int startNote, int[] intervals) throws UnavailableException {
+    SequenceBuilder builder = startSequence();
+    int steps = 0;
+    builder.addTunedNote(startNote);
+    for (int interval : intervals) {
+      steps += interval;
+      builder.addTunedNote(tuning.getPitch(startNote, steps));
+    }
+    playSequence(builder.getSequence());
+  }
+
+  /**
+   * Starts playing a phrase, stopping the previous one. By default, plays its
+   * sequence. (Called by {@link #play(Phrase, int)}, which times the first phrase
+   * after a sound change.)
+   */
+  void startPhrase(Phrase phrase, int startNote) throws UnavailableException {
+    playSequence(getSequence(phrase, startNote));
+  }
+
+  /**
+   * Starts playing a sequence built by {@link SequenceBuilder}, stopping the
+   * previous one.
+   */
+  abstract void playSequence(Sequence sequence) throws UnavailableException;
+
+  /**
+   * Stops loading instruments. Subclasses also close the synthesizer.
+   */
+  public void shutdown() {
+    loader.shutdownNow();
+  }
+
+  /**
+   * Returns the sounds in the synthesizer's default soundbank.
+   */
+  static SoundCatalog getDefaultSounds(Synthesizer synth) throws UnavailableException {
+    return SoundCatalog.of(synth.getDefaultSoundbank());
+  }
+
+  static Synthesizer getDefaultSynthesizer() throws UnavailableException {
+    try {
+      return MidiSystem.getSynthesizer();
+    } catch (MidiUnavailableException e) {
+      throw new UnavailableException(e);
+    }
+  }
+
+  /**
+   * Returns the default synthesizer, opened on the default audio device.
+   */
+  static Synthesizer openDefaultSynthesizer() throws UnavailableException {
+    Synthesizer synth = getDefaultSynthesizer();
+    try {
+      synth.open();
+    } catch (MidiUnavailableException e) {
+      throw new UnavailableException(e);
+    }
+    return synth;
+  }
+
+  Sound getSound() {
+    if (sound == null) {
+      sound = getDefaultSound();
+    }
+    return sound;
+  }
+
+  /**
+   * Returns the sequence for a phrase, building it if it's not in the cache.
+   */
+  Sequence getSequence(Phrase phrase, int startNote) throws UnavailableException {
+    SequenceCache.Key key = new SequenceCache.Key(phrase, startNote, getSound());
+    Sequence sequence = cache.get(key);
+    if (sequence == null) {
+      sequence = makeSequence(phrase, startNote);
+      cache.put(key, sequence);
+    }
+    return sequence;
+  }
+
+  // === private methods ===
+
+  private Sequence makeSequence(Phrase phrase, int startNote) throws UnavailableException {
+    SequenceBuilder builder = startSequence();
+    for (int note : phrase.getNotes(startNote)) {
+      builder.addNote(note);
+    }
+    return builder.getSequence();
+  }
+
+  private SequenceBuilder startSequence() throws UnavailableException {
+    SequenceBuilder builder = new SequenceBuilder();
+    builder.addProgramChange(getSound());
+    return builder;
+  }
+}
@@ -0,0 +1,187 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sends the messages in a midi sequence to a receiver at the right times, using
+ * its own timer thread. Scheduling a new sequence cancels the previous one
+ * immediately, silencing any notes that are still sounding.
+ *
+ * <p>The timer thread waits until shortly before each message is due and then
+ * spins, so that messages are sent within a fraction of a millisecond of when they
+ * should be, regardless of the granularity of Object.wait().
+ */
+class MidiScheduler {
+  private static final long SPIN_NANOS = 2000000L;
+  private static final int ALL_NOTES_OFF = 123;
+
+  private final Receiver receiver;
+  private final long nanosPerTick;
+  private final Thread timer;
+
+  // guarded by this
+  private MidiMessage[] messages = new MidiMessage[0];
+  private long[] dueTimes = new long[0];
+  private int next = 0;
+  private boolean stopped = false;
+
+  /**
+   * Creates a scheduler and starts its thread.
+   * @param beatsPerMinute the tempo. (One tick per beat is assumed.)
+   */
+  MidiScheduler(Receiver receiver, int beatsPerMinute) {
+    this.receiver = receiver;
+    this.nanosPerTick = 60000000000L / beatsPerMinute;
+    this.timer = new Thread(new Runnable() {
+      public void run() {
+        runTimer();
+      }
+    }, "MidiScheduler timer");
+    timer.setDaemon(true);
+    timer.setPriority(Thread.MAX_PRIORITY);
+    timer.start();
+  }
+
+  /**
+   * Stops the current sequence, if any, and starts sending the messages in the given
+   * sequence.
+   */
+  void play(Sequence sequence) {
+    if (sequence.getResolution() != 1) {
+      throw new IllegalArgumentException("unsupported resolution: " +
+          sequence.getResolution());
+    }
+    List<MidiEvent> events = getEvents(sequence);
+    synchronized (this) {
+      silence();
+      long start = System.nanoTime();
+      messages = new MidiMessage[events.size()];
+      dueTimes = new long[events.size()];
+      for (int i = 0; i < messages.length; i++) {
+        messages[i] = events.get(i).getMessage();
+        dueTimes[i] = start + events.get(i).getTick() * nanosPerTick;
+      }
+      next = 0;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Stops the current sequence, if any.
+   */
+  synchronized void cancel() {
+    silence();
+    next = messages.length;
+  }
+
+  /**
+   * Returns true if some messages in the current sequence haven't been sent yet.
+   */
+  synchronized boolean isPlaying() {
+    return next < messages.length;
+  }
+
+  /**
+   * Cancels the current sequence and stops the timer thread.
+   */
+  void shutdown() {
+    synchronized (this) {
+      cancel();
+      stopped = true;
+      notifyAll();
+    }
+    try {
+      timer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // === private methods ===
+
+  private void runTimer() {
+    try {
+      while (true) {
+        synchronized (this) {
+          if (stopped) {
+            return;
+          }
+          if (next >= messages.length) {
+            wait();
+            continue;
+          }
+          long delay = dueTimes[next] - System.nanoTime();
+          if (delay <= 0) {
+            // send while holding the lock, so that a cancelled message is never sent
+            receiver.send(messages[next++], -1);
+            continue;
+          }
+          if (delay > SPIN_NANOS) {
+            long millis = (delay - SPIN_NANOS) / 1000000L;
+            wait(Math.max(1, millis));
+            continue;
+          }
+        }
+        Thread.yield();
+      }
+    } catch (InterruptedException e) {
+      // exit
+    }
+  }
+
+  /**
+   * Turns off any notes that might be sounding from the current sequence.
+   */
+  private void silence() {
+    boolean[] channels = new boolean[16];
+    for (int i = 0; i < next; i++) {
+      if (messages[i] instanceof ShortMessage) {
+        channels[((ShortMessage) messages[i]).getChannel()] = true;
+      }
+    }
+    for (int channel = 0; channel < channels.length; channel++) {
+      if (channels[channel]) {
+        try {
+          ShortMessage msg = new ShortMessage();
+          msg.setMessage(ShortMessage.CONTROL_CHANGE, channel, ALL_NOTES_OFF, 0);
+          receiver.send(msg, -1);
+        } catch (InvalidMidiDataException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the short messages in a sequence, in the order they should be sent.
+   */
+  static List<MidiEvent> getEvents(Sequence sequence) {
+    List<MidiEvent> result = new ArrayList<MidiEvent>();
+    for (Track track : sequence.getTracks()) {
+      for (int i = 0; i < track.size(); i++) {
+        MidiEvent event = track.get(i);
+        if (event.getMessage() instanceof ShortMessage) {
+          result.add(event); // skips the end of track meta event
+        }
+      }
+    }
+    // a stable sort, so events at the same tick stay in order
+    Collections.sort(result, new Comparator<MidiEvent>() {
+      public int compare(MidiEvent a, MidiEvent b) {
+        return a.getTick() < b.getTick() ? -1 : (a.getTick() > b.getTick() ? 1 : 0);
+      }
+    });
+    return result;
+  }
+}
@@ -0,0 +1,56 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Collection;
+
+/**
+ * The quiz settings compiled for phrase generation: the signed intervals in half steps
+ * that may be played, and the scale that the notes must stay in. Notes are tracked as
+ * sets of the notes in the octave that a phrase could be on (see {@link #move}).
+ */
+class MoveTable {
+  static final int OCTAVE = 12;
+
+  private final int scaleBits;
+  private final int[] moves;
+
+  private MoveTable(int scaleBits, int[] moves) {
+    this.scaleBits = scaleBits;
+    this.moves = moves;
+  }
+
+  static MoveTable compile(Scale scale, IntervalFilter intervals, DirectionFilter direction) {
+    Collection<Interval> allowed = intervals.intersectScale(scale).generate(direction);
+    int[] moves = new int[allowed.size()];
+    int i = 0;
+    for (Interval interval : allowed) {
+      moves[i++] = interval.getHalfSteps();
+    }
+    return new MoveTable(scale.getBits(), moves);
+  }
+
+  /**
+   * Returns the notes in the scale as a bitmask. (Bit 0 is the tonic.)
+   */
+  int getScaleBits() {
+    return scaleBits;
+  }
+
+  /**
+   * Returns all the moves allowed by the interval and direction filters, in ascending order.
+   * (The caller must not modify the array.)
+   */
+  int[] getMoves() {
+    return moves;
+  }
+
+  /**
+   * Moves each note in a set by the given interval, keeping the ones that land in the scale.
+   * @param notes a bitmask of notes within the octave (bit 0 is the tonic)
+   * @return the new set of notes, or 0 if none of them are in the scale
+   */
+  int move(int notes, int halfSteps) {
+    int shift = Util.modulus(halfSteps, OCTAVE);
+    return (notes << shift | notes >>> (OCTAVE - shift)) & scaleBits;
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers phrases that were rendered to PCM audio. The cache is bounded by the
+ * total size of the audio it holds; the least recently used audio is evicted first.
+ * It may be used from multiple threads.
+ */
+class PcmCache {
+  static final int DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+  private final int maxBytes;
+  private final Map<SequenceCache.Key, byte[]> entries =
+      new LinkedHashMap<SequenceCache.Key, byte[]>(16, 0.75f, true);
+  private int byteCount = 0;
+  private int hits = 0;
+  private int misses = 0;
+
+  PcmCache(int maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the audio for the given key, or null if it needs to be rendered.
+   * (The caller must not modify the array.)
+   */
+  synchronized byte[] get(SequenceCache.Key key) {
+    byte[] result = entries.get(key);
+    if (result == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  synchronized boolean contains(SequenceCache.Key key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * Adds some audio to the cache. (Audio larger than the cache itself isn't stored.)
+   * The array must not be modified afterwards.
+   */
+  synchronized void put(SequenceCache.Key key, byte[] audio) {
+    if (audio.length > maxBytes) {
+      return;
+    }
+    byte[] old = entries.put(key, audio);
+    if (old != null) {
+      byteCount -= old.length;
+    }
+    byteCount += audio.length;
+    evict();
+  }
+
+  synchronized void clear() {
+    entries.clear();
+    byteCount = 0;
+  }
+
+  synchronized int getHits() {
+    return hits;
+  }
+
+  synchronized int getMisses() {
+    return misses;
+  }
+
+  synchronized int getByteCount() {
+    return byteCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "PcmCache(" + entries.size() + " phrases, " + byteCount + " bytes, " + hits +
+        " hits, " + misses + " misses)";
+  }
+
+  private void evict() {
+    Iterator<byte[]> it = entries.values().iterator();
+    while (byteCount > maxBytes && it.hasNext()) {
+      byteCount -= it.next().length;
+      it.remove();
+    }
+  }
+}
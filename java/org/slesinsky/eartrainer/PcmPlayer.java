@@ -0,0 +1,215 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Plays phrases that were rendered to PCM audio ahead of time (see {@link PcmRenderer}),
+ * through an audio line that stays open. Starting a phrase only means handing its
+ * audio to the line, so the delay between a click and the sound is short and
+ * consistent.
+ *
+ * <p>Phrases passed to {@link #prepare} are rendered on a background thread and
+ * kept in a {@link PcmCache}.
+ */
+class PcmPlayer extends MidiPlayer {
+  // a short line buffer keeps the delay low when a phrase is interrupted
+  private static final int LINE_BUFFER_BYTES = 4096;
+  private static final int CHUNK_BYTES = 512;
+
+  private final PcmRenderer renderer;
+  private final PcmCache cache = new PcmCache(PcmCache.DEFAULT_MAX_BYTES);
+  private final ExecutorService renderThread;
+  private final Map<SequenceCache.Key, Future<byte[]>> rendering =
+      new HashMap<SequenceCache.Key, Future<byte[]>>();
+
+  private final SourceDataLine line;
+  private final Thread playbackThread;
+
+  // the audio being played; guarded by this
+  private byte[] current;
+  private int position;
+  private boolean stopped;
+
+  PcmPlayer() throws UnavailableException {
+    this(getDefaultSynthesizer());
+  }
+
+  private PcmPlayer(Synthesizer synth) throws UnavailableException {
+    this(synth, getDefaultSounds(synth));
+  }
+
+  /**
+   * Creates a player that renders the given sounds with the given synthesizer, which
+   * must not be open. (The renderer opens it.)
+   */
+  PcmPlayer(Synthesizer synth, SoundCatalog sounds) throws UnavailableException {
+    super(synth, sounds);
+    this.renderer = new PcmRenderer(getSynthesizer(), BEATS_PER_MINUTE);
+    try {
+      line = AudioSystem.getSourceDataLine(PcmRenderer.FORMAT);
+      line.open(PcmRenderer.FORMAT, LINE_BUFFER_BYTES);
+      line.start();
+    } catch (LineUnavailableException e) {
+      renderer.close();
+      throw new UnavailableException(e);
+    }
+    this.renderThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, "PCM renderer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.playbackThread = new Thread(new Runnable() {
+      public void run() {
+        writeAudio();
+      }
+    }, "PCM playback");
+    playbackThread.setDaemon(true);
+    playbackThread.start();
+    preload(getDefaultSound());
+  }
+
+  /**
+   * Returns the cache of rendered phrases, for its statistics.
+   */
+  PcmCache getPcmCache() {
+    return cache;
+  }
+
+  @Override
+  public void setSound(Sound sound) {
+    super.setSound(sound);
+    cache.clear();
+  }
+
+  /**
+   * Starts the phrase's rendered audio, waiting for it if it's still being rendered.
+   */
+  @Override
+  void startPhrase(Phrase phrase, int startNote) throws UnavailableException {
+    SequenceCache.Key key = new SequenceCache.Key(phrase, startNote, getSound());
+    byte[] audio = cache.get(key);
+    if (audio == null) {
+      Future<byte[]> pending;
+      synchronized (rendering) {
+        pending = rendering.get(key);
+      }
+      audio = pending != null ? waitFor(pending) :
+          renderer.render(getSequence(phrase, startNote));
+      cache.put(key, audio);
+    }
+    start(audio);
+  }
+
+  /**
+   * Starts rendering a phrase in the background, unless it's already been rendered.
+   */
+  @Override
+  public void prepare(Phrase phrase, int startNote) throws UnavailableException {
+    final SequenceCache.Key key = new SequenceCache.Key(phrase, startNote, getSound());
+    if (cache.contains(key)) {
+      return;
+    }
+    // the sequence is built on this thread, since the sequence cache isn't thread-safe
+    final Sequence sequence = getSequence(phrase, startNote);
+    synchronized (rendering) {
+      if (rendering.containsKey(key)) {
+        return;
+      }
+      rendering.put(key, renderThread.submit(new Callable<byte[]>() {
+        public byte[] call() throws UnavailableException {
+          try {
+            byte[] audio = renderer.render(sequence);
+            cache.put(key, audio);
+            return audio;
+          } finally {
+            synchronized (rendering) {
+              rendering.remove(key);
+            }
+          }
+        }
+      }));
+    }
+  }
+
+  @Override
+  void playSequence(Sequence sequence) throws UnavailableException {
+    start(renderer.render(sequence));
+  }
+
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    synchronized (this) {
+      stopped = true;
+      notifyAll();
+    }
+    renderThread.shutdownNow();
+    line.stop();
+    line.close();
+    renderer.close();
+  }
+
+  // === private methods ===
+
+  private synchronized void start(byte[] audio) {
+    current = audio;
+    position = 0;
+    line.flush();
+    notifyAll();
+  }
+
+  /**
+   * Copies the current audio to the line, a chunk at a time so that a new phrase
+   * can interrupt it.
+   */
+  private void writeAudio() {
+    try {
+      while (true) {
+        byte[] audio;
+        int offset;
+        int length;
+        synchronized (this) {
+          while (!stopped && (current == null || position >= current.length)) {
+            wait();
+          }
+          if (stopped) {
+            return;
+          }
+          audio = current;
+          offset = position;
+          length = Math.min(CHUNK_BYTES, audio.length - offset);
+          position += length;
+        }
+        line.write(audio, offset, length);
+      }
+    } catch (InterruptedException e) {
+      // exit
+    }
+  }
+
+  private static byte[] waitFor(Future<byte[]> pending) throws UnavailableException {
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UnavailableException(e);
+    } catch (ExecutionException e) {
+      throw new UnavailableException(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,161 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Renders midi sequences to PCM audio ahead of time, using the JDK's software
+ * synthesizer. The synthesizer is opened as a stream rather than on an audio device
+ * (see com.sun.media.sound.AudioSynthesizer), so rendering runs as fast as the CPU
+ * allows and works without any sound hardware.
+ *
+ * <p>AudioSynthesizer isn't a public API, so it's called by reflection. On Java 9 and
+ * later this needs {@code --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED};
+ * without it, the constructor throws UnavailableException.
+ */
+class PcmRenderer {
+  static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true, false);
+
+  // how long to keep rendering after the last message, so that the last note can fade
+  private static final double RELEASE_SECONDS = 0.5;
+  private static final int ALL_SOUND_OFF = 120;
+  private static final int RESET_ALL_CONTROLLERS = 121;
+
+  private final Synthesizer synth;
+  private final AudioInputStream stream;
+  private final Receiver receiver;
+  private final long framesPerTick;
+
+  /**
+   * Opens a synthesizer for rendering.
+   * @param beatsPerMinute the tempo of the sequences to render. (One tick per beat
+   *     is assumed.)
+   */
+  PcmRenderer(Synthesizer synth, int beatsPerMinute) throws UnavailableException {
+    this.synth = synth;
+    this.framesPerTick = Math.round(FORMAT.getFrameRate() * 60 / beatsPerMinute);
+    this.stream = openStream(synth, FORMAT);
+    try {
+      this.receiver = synth.getReceiver();
+    } catch (MidiUnavailableException e) {
+      synth.close();
+      throw new UnavailableException(e);
+    }
+  }
+
+  /**
+   * Opens a synthesizer without an audio device. Audio is rendered as it's read from
+   * the returned stream.
+   */
+  static AudioInputStream openStream(Synthesizer synth, AudioFormat format)
+      throws UnavailableException {
+    try {
+      return (AudioInputStream) findOpenStream(synth).invoke(synth, format, null);
+    } catch (IllegalAccessException e) {
+      throw new UnavailableException(e);
+    } catch (InvocationTargetException e) {
+      throw new UnavailableException(e.getCause());
+    }
+  }
+
+  /**
+   * Renders a sequence built by {@link SequenceBuilder} to PCM audio in
+   * {@link #FORMAT}.
+   */
+  synchronized byte[] render(Sequence sequence) throws UnavailableException {
+    if (sequence.getResolution() != 1) {
+      throw new IllegalArgumentException("unsupported resolution: " +
+          sequence.getResolution());
+    }
+    int frameSize = FORMAT.getFrameSize();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096 * frameSize];
+    try {
+      reset();
+      long frame = 0;
+      long lastTick = 0;
+      for (MidiEvent event : MidiScheduler.getEvents(sequence)) {
+        frame = renderFrames(frame, event.getTick() * framesPerTick, buffer, out);
+        receiver.send(event.getMessage(), -1);
+        lastTick = event.getTick();
+      }
+      long end = lastTick * framesPerTick + Math.round(RELEASE_SECONDS * FORMAT.getFrameRate());
+      renderFrames(frame, end, buffer, out);
+    } catch (IOException e) {
+      throw new UnavailableException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Returns the length of some audio in {@link #FORMAT}, in seconds.
+   */
+  static double getSeconds(byte[] audio) {
+    return audio.length / (double) FORMAT.getFrameSize() / FORMAT.getFrameRate();
+  }
+
+  synchronized void close() {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      // ignore
+    }
+    synth.close();
+  }
+
+  // === private methods ===
+
+  private long renderFrames(long frame, long endFrame, byte[] buffer, ByteArrayOutputStream out)
+      throws IOException {
+    int frameSize = FORMAT.getFrameSize();
+    while (frame < endFrame) {
+      int frames = (int) Math.min(endFrame - frame, buffer.length / frameSize);
+      int bytes = stream.read(buffer, 0, frames * frameSize);
+      if (bytes <= 0) {
+        throw new IOException("synthesizer stream ended");
+      }
+      out.write(buffer, 0, bytes);
+      frame += bytes / frameSize;
+    }
+    return frame;
+  }
+
+  /**
+   * Silences anything left over from the previous sequence.
+   */
+  private void reset() throws UnavailableException {
+    try {
+      ShortMessage msg = new ShortMessage();
+      msg.setMessage(ShortMessage.CONTROL_CHANGE, SequenceBuilder.CHANNEL, ALL_SOUND_OFF, 0);
+      receiver.send(msg, -1);
+      msg = new ShortMessage();
+      msg.setMessage(ShortMessage.CONTROL_CHANGE, SequenceBuilder.CHANNEL,
+          RESET_ALL_CONTROLLERS, 0);
+      receiver.send(msg, -1);
+    } catch (InvalidMidiDataException e) {
+      throw new UnavailableException(e);
+    }
+  }
+
+  private static Method findOpenStream(Synthesizer synth) throws UnavailableException {
+    try {
+      return synth.getClass().getMethod("openStream", AudioFormat.class, Map.class);
+    } catch (NoSuchMethodException e) {
+      throw new UnavailableException("can't render offline with " +
+          synth.getDeviceInfo().getName());
+    }
+  }
+}
@@ -2,77 +2,90 @@
 package org.slesinsky.eartrainer;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Random;
 
 /**
  * A sequence of notes that may be played relative to any starting note.
+ * (A thin wrapper around a {@link PhraseCode}; lists of intervals and notes
+ * are only created when asked for.)
  */
 class Phrase implements Comparable<Phrase> {
-  private final int[] intervals;
+  private final long code;
+  private final int minNote;
+  private final int maxNote;
+
+  Phrase(long code) {
+    this.code = code;
+    this.minNote = PhraseCode.minOffset(code);
+    this.maxNote = PhraseCode.maxOffset(code);
+  }
+
+  Phrase(int[] intervals) {
+    this(PhraseCode.encode(intervals));
+  }
 
   Phrase(Collection<Interval> intervals) {
-    this.intervals = new int[intervals.size()];
-    int i = 0;
-    for (Interval interval : intervals) {
-      this.intervals[i++] = interval.getHalfSteps(); 
+    this(toHalfSteps(intervals));
+  }
+
+  long getCode() {
+    return code;
+  }
+
+  int getIntervalCount() {
+    return PhraseCode.length(code);
+  }
+
+  /**
+   * Returns the interval at the given position, in half steps. (Negative if descending.)
+   */
+  int getHalfSteps(int position) {
+    if (position < 0 || position >= getIntervalCount()) {
+      throw new IndexOutOfBoundsException("no interval at " + position + " in " + this);
     }
+    return PhraseCode.get(code, position);
   }
 
   List<Interval> getIntervals() {
-    List<Interval> result = new ArrayList<Interval>();
-    for (int interval : intervals) {
-      result.add(new Interval(interval));
+    int count = getIntervalCount();
+    List<Interval> result = new ArrayList<Interval>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(new Interval(PhraseCode.get(code, i)));
     }
     return result;
   }
 
   List<Integer> getNotes(int startNote) {
-    List<Integer> result = new ArrayList<Integer>();
+    int count = getIntervalCount();
+    List<Integer> result = new ArrayList<Integer>(count + 1);
     result.add(startNote);
-    for (int interval : intervals) {
-      startNote += interval;
+    for (int i = 0; i < count; i++) {
+      startNote += PhraseCode.get(code, i);
       result.add(startNote);
     }
     return result;
   }
 
   Scale getScale() {
-    return new Scale(0, getNotes(0));
+    return new Scale(PhraseCode.getScaleBits(code));
   }  
 
   boolean canTransposeToScale(Scale candidate) {
-    return candidate.containsAnywhere(getScale());
+    return ContainmentTable.containsAnywhere(candidate.getBits(), PhraseCode.getScaleBits(code));
   }
 
   int getRange() {
-    return getMaxNote(0) - getMinNote(0);
-  }
-
-  /**
-   * Returns a start note such that the all the notes in the phrase will be between lowestNote
-   * and highestNote (inclusive). If the phrase cannot be played within this range, returns null.
-   */
-  Integer chooseRandomStartNote(Random randomness, int lowestNote, int highestNote) {
-    int minStartNote = lowestNote - getMinNote(0);
-    int maxStartNote = highestNote - getMaxNote(0);
-
-    if (minStartNote > maxStartNote) {
-      return null;
-    } else {
-      return minStartNote + randomness.nextInt(maxStartNote - minStartNote + 1);
-    }
+    return maxNote - minNote;
   }
 
   boolean containsIntervalsInOrder(List<Interval> ascendingIntervals) {
-    List<Interval> intervals = getIntervals();
-    if (ascendingIntervals.size() != intervals.size()) {
+    int count = getIntervalCount();
+    if (ascendingIntervals.size() != count) {
       return false;
     }
-    for (int i = 0 ; i < intervals.size(); i++) {
-      if (!intervals.get(i).toAscending().equals(ascendingIntervals.get(i))) {
+    for (int i = 0 ; i < count; i++) {
+      if (Math.abs(PhraseCode.get(code, i)) != ascendingIntervals.get(i).getHalfSteps()) {
         return false;        
       }      
     }
@@ -81,34 +94,20 @@ class Phrase implements Comparable<Phrase> {
 
   @Override
   public int hashCode() {
-    return Arrays.hashCode(intervals);
+    return (int) (code ^ (code >>> 32));
   }
 
   @Override
   public boolean equals(Object object) {
-    if (!(object instanceof Phrase)) {
-      return false;
-    }
-    Phrase other = (Phrase) object;
-    return compareTo(other) == 0;
+    return (object instanceof Phrase) && code == ((Phrase) object).code;
   }
 
   public int compareTo(Phrase other) {
-    int size = intervals.length;
-    int otherSize = other.intervals.length;
-    if (size != otherSize) {
-      return size < otherSize ? -1 : 1;
-    }
-
-    for (int i = 0; i < size; i++) {
-      int here = intervals[i];
-      int there = other.intervals[i];
-      if (here != there) {
-        return here < there ? -1 : 1;
-      }
+    if (code == other.code) {
+      return 0;
+    } else {
+      return code < other.code ? -1 : 1;
     }
-    
-    return 0;
   }
 
   @Override
@@ -128,51 +127,13 @@ class Phrase implements Comparable<Phrase> {
   }
 
   // === private methods ===
-  
-  private int getMinNote(int startNote) {
-    int result = startNote;
-    for (int note : getNotes(startNote)) {
-      result = Math.min(result, note);
-    }
-    return result;
-  }
 
-  private int getMaxNote(int startNote) {
-    int result = startNote;
-    for (int note : getNotes(startNote)) {
-      result = Math.max(result, note);
+  private static int[] toHalfSteps(Collection<Interval> intervals) {
+    int[] result = new int[intervals.size()];
+    int i = 0;
+    for (Interval interval : intervals) {
+      result[i++] = interval.getHalfSteps();
     }
     return result;
   }
-
-  /**
-   * Mutable variant of a phrase.
-   */
-  static class Builder {
-    private final List<Interval> intervals = new ArrayList<Interval>();
-    
-    void add(Interval interval) {
-      intervals.add(interval);    
-    }
-    
-    void pop() {
-      intervals.remove(intervals.size() - 1);
-    }
-  
-    Phrase build() {
-      return new Phrase(intervals);
-    }
-
-    int range() {
-      int min = 0;
-      int max = 0;
-      int current = 0;
-      for (Interval interval : intervals) {
-        current += interval.getHalfSteps();
-        min = Math.min(current, min);
-        max = Math.max(current, max);
-      }
-      return max - min;
-    }
-  }
 }
@@ -0,0 +1,157 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently generated phrase lists so that they don't need to be
+ * generated again until the quiz settings change. The cache is bounded by the
+ * total number of phrases it holds; the least recently used lists are evicted first.
+ */
+class PhraseCache {
+  static final int DEFAULT_MAX_PHRASES = 500000;
+
+  private final int maxPhrases;
+  private final Map<Key, LongList> entries =
+      new LinkedHashMap<Key, LongList>(16, 0.75f, true);
+  private int phraseCount = 0;
+  private int hits = 0;
+  private int misses = 0;
+
+  PhraseCache(int maxPhrases) {
+    this.maxPhrases = maxPhrases;
+  }
+
+  /**
+   * Returns the phrase codes for the given key, or null if they need to be generated.
+   * (The caller must not modify the list.)
+   */
+  LongList get(Key key) {
+    LongList result = entries.get(key);
+    if (result == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  /**
+   * Adds a list of phrase codes to the cache. (Lists larger than the cache itself
+   * aren't stored.) The list must not be modified afterwards.
+   */
+  void put(Key key, LongList phrases) {
+    if (phrases.size() > maxPhrases) {
+      return;
+    }
+    LongList old = entries.put(key, phrases);
+    if (old != null) {
+      phraseCount -= old.size();
+    }
+    phraseCount += phrases.size();
+    evict();
+  }
+
+  void clear() {
+    entries.clear();
+    phraseCount = 0;
+  }
+
+  int getHits() {
+    return hits;
+  }
+
+  int getMisses() {
+    return misses;
+  }
+
+  int getPhraseCount() {
+    return phraseCount;
+  }
+
+  @Override
+  public String toString() {
+    return "PhraseCache(" + entries.size() + " lists, " + phraseCount + " phrases, " +
+        hits + " hits, " + misses + " misses)";
+  }
+
+  private void evict() {
+    Iterator<LongList> it = entries.values().iterator();
+    while (phraseCount > maxPhrases && it.hasNext()) {
+      phraseCount -= it.next().size();
+      it.remove();
+    }
+  }
+
+  /**
+   * The quiz settings that determine which phrases are generated.
+   */
+  static class Key {
+    private final Scale scale;
+    private final IntervalFilter intervals;
+    private final DirectionFilter direction;
+    private final int noteCount;
+    private final PhraseConstraint constraint;
+
+    Key(Scale scale, IntervalFilter intervals, DirectionFilter direction, int noteCount) {
+      this(scale, intervals, direction, noteCount, PhraseConstraint.NONE);
+    }
+
+    Key(Scale scale, IntervalFilter intervals, DirectionFilter direction, int noteCount,
+        PhraseConstraint constraint) {
+      this.scale = scale;
+      this.intervals = intervals;
+      this.direction = direction;
+      this.noteCount = noteCount;
+      this.constraint = constraint;
+    }
+
+    Scale getScale() {
+      return scale;
+    }
+
+    IntervalFilter getIntervals() {
+      return intervals;
+    }
+
+    DirectionFilter getDirection() {
+      return direction;
+    }
+
+    int getNoteCount() {
+      return noteCount;
+    }
+
+    PhraseConstraint getConstraint() {
+      return constraint;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = scale.hashCode();
+      result = 31 * result + intervals.hashCode();
+      result = 31 * result + direction.hashCode();
+      result = 31 * result + noteCount;
+      return 31 * result + constraint.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return scale.equals(other.scale) && intervals.equals(other.intervals) &&
+          direction == other.direction && noteCount == other.noteCount &&
+          constraint.equals(other.constraint);
+    }
+
+    @Override
+    public String toString() {
+      return "Key(" + scale + ", " + intervals + ", " + direction + ", " + noteCount + ", " +
+          constraint + ")";
+    }
+  }
+}
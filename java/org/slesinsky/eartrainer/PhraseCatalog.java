@@ -0,0 +1,250 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A file of phrase lists that were generated ahead of time, for common quiz settings.
+ * The file is memory-mapped read-only, so opening it takes the same time no matter how
+ * large it is, and several processes reading the same file share its pages.
+ *
+ * <p>The file starts with a header (magic number, version, and number of lists),
+ * followed by an index sorted by key. Each index entry holds a key packed into an int,
+ * the number of phrases, and the byte offset of the phrases. The rest of the file holds
+ * the {@link PhraseCode}s for each list. All values are big-endian.
+ *
+ * <p>Run main() to generate a catalog.
+ */
+class PhraseCatalog {
+  static final String FILE_PROPERTY = "eartrainer.catalog";
+
+  private static final int MAGIC = 0x45545043; // "ETPC"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 12;
+  private static final int ENTRY_SIZE = 16;
+  private static final int MAX_CATALOG_NOTES = 5;
+
+  private final ByteBuffer buffer;
+  private final int entryCount;
+
+  private PhraseCatalog(ByteBuffer buffer) throws UnavailableException {
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new UnavailableException("not a phrase catalog (or the wrong version)");
+    }
+    this.buffer = buffer;
+    this.entryCount = buffer.getInt(8);
+  }
+
+  /**
+   * Maps a catalog file into memory.
+   */
+  static PhraseCatalog open(File file) throws UnavailableException {
+    try {
+      RandomAccessFile input = new RandomAccessFile(file, "r");
+      try {
+        FileChannel channel = input.getChannel();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        return new PhraseCatalog(buffer);
+      } finally {
+        input.close(); // the mapping stays valid
+      }
+    } catch (IOException e) {
+      throw new UnavailableException(e);
+    }
+  }
+
+  /**
+   * Opens the catalog named by the {@link #FILE_PROPERTY} system property, if any.
+   * Returns null if there isn't one or it can't be read.
+   */
+  static PhraseCatalog openDefault() {
+    try {
+      String path = System.getProperty(FILE_PROPERTY);
+      if (path == null) {
+        return null;
+      }
+      return open(new File(path));
+    } catch (SecurityException e) {
+      return null; // probably running as an applet
+    } catch (UnavailableException e) {
+      e.printStackTrace(System.err);
+      return null;
+    }
+  }
+
+  int getListCount() {
+    return entryCount;
+  }
+
+  /**
+   * Returns the phrase codes for the given settings, or null if they aren't in the catalog.
+   */
+  LongSequence find(PhraseCache.Key key) {
+    int packedKey = packKey(key);
+    if (packedKey < 0) {
+      return null;
+    }
+    int low = 0;
+    int high = entryCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int position = HEADER_SIZE + middle * ENTRY_SIZE;
+      int candidate = buffer.getInt(position);
+      if (candidate < packedKey) {
+        low = middle + 1;
+      } else if (candidate > packedKey) {
+        high = middle - 1;
+      } else {
+        return makeList(buffer.getInt(position + 4), buffer.getLong(position + 8));
+      }
+    }
+    return null;
+  }
+
+  // === private methods ===
+
+  private LongSequence makeList(final int count, long offset) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position((int) offset);
+    final LongBuffer codes = slice.slice().asLongBuffer();
+    return new LongSequence() {
+      public int size() {
+        return count;
+      }
+
+      public long get(int index) {
+        if (index >= count) {
+          throw new IndexOutOfBoundsException("index " + index + " >= size " + count);
+        }
+        return codes.get(index);
+      }
+    };
+  }
+
+  /**
+   * Packs the settings into an int that sorts the same way in the index, or returns -1
+   * if they can't be packed. (12 bits of scale, 13 bits of intervals, 2 bits of direction,
+   * and 4 bits of note count. Constrained phrase lists aren't in the catalog.)
+   */
+  private static int packKey(PhraseCache.Key key) {
+    if (!key.getConstraint().isEmpty()) {
+      return -1;
+    }
+    int intervals = key.getIntervals().getBits();
+    int noteCount = key.getNoteCount();
+    if (intervals >= (1 << 13) || noteCount >= (1 << 4)) {
+      return -1;
+    }
+    return key.getScale().getBits() << 19 | intervals << 6 |
+        key.getDirection().ordinal() << 4 | noteCount;
+  }
+
+  // === generating a catalog ===
+
+  /**
+   * Writes a catalog of phrase lists for each combination of the given settings.
+   * Phrase spaces too large to be listed (see {@link QuestionChooser}) are skipped.
+   * @return the number of lists written
+   */
+  static int write(File file, List<Scale> scales, List<IntervalFilter> filters,
+      int maxNoteCount) throws IOException {
+    Map<Integer, LongList> lists = new TreeMap<Integer, LongList>();
+    for (Scale scale : scales) {
+      for (IntervalFilter filter : filters) {
+        if (filter.isEmpty()) {
+          continue;
+        }
+        for (DirectionFilter direction : DirectionFilter.values()) {
+          MoveTable table = MoveTable.compile(scale, filter, direction);
+          for (int noteCount = 2; noteCount <= maxNoteCount; noteCount++) {
+            int range = QuestionChooser.getMaxPhraseRange(filter, noteCount);
+            if (new PhraseCounter(table, noteCount, range).count() >
+                QuestionChooser.MAX_LISTED_PHRASES) {
+              continue;
+            }
+            PhraseCache.Key key = new PhraseCache.Key(scale, filter, direction, noteCount);
+            lists.put(packKey(key), new PhraseSpace(table, noteCount, range).toList());
+          }
+        }
+      }
+    }
+
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(lists.size());
+      long offset = HEADER_SIZE + (long) lists.size() * ENTRY_SIZE;
+      for (Map.Entry<Integer, LongList> entry : lists.entrySet()) {
+        out.writeInt(entry.getKey());
+        out.writeInt(entry.getValue().size());
+        out.writeLong(offset);
+        offset += entry.getValue().size() * 8L;
+      }
+      for (LongList list : lists.values()) {
+        for (int i = 0; i < list.size(); i++) {
+          out.writeLong(list.get(i));
+        }
+      }
+    } finally {
+      out.close();
+    }
+    return lists.size();
+  }
+
+  /**
+   * Returns the interval filters that a user is likely to choose: the default, each
+   * run of consecutive intervals starting from the unison or the minor second, and the
+   * default plus any one other interval.
+   */
+  static List<IntervalFilter> getCommonFilters() {
+    List<IntervalFilter> result = new ArrayList<IntervalFilter>();
+    result.add(IntervalFilter.DEFAULT);
+    for (Interval first : new Interval[] {Interval.UNISON, Interval.MINOR_SECOND}) {
+      IntervalFilter filter = new IntervalFilter();
+      for (Interval interval : Interval.range(first, Interval.OCTAVE)) {
+        filter = filter.enable(interval);
+        result.add(filter);
+      }
+    }
+    for (Interval interval : Interval.range(Interval.UNISON, Interval.OCTAVE)) {
+      result.add(IntervalFilter.DEFAULT.enable(interval));
+    }
+    return result;
+  }
+
+  /**
+   * Generates a catalog for the most common scales and the common interval filters.
+   * Usage: PhraseCatalog output-file [max-notes]
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("usage: PhraseCatalog output-file [max-notes]");
+      System.exit(1);
+    }
+    int maxNoteCount = args.length > 1 ? Integer.parseInt(args[1]) : MAX_CATALOG_NOTES;
+    List<Scale> scales = Arrays.asList(Scale.MAJOR_PENTATONIC, Scale.BLUES, Scale.MAJOR,
+        Scale.HARMONIC_MINOR, Scale.CHROMATIC);
+    File file = new File(args[0]);
+    Profiler p = new Profiler();
+    int count = write(file, scales, getCommonFilters(), maxNoteCount);
+    p.log("generated catalog");
+    System.out.println("wrote " + count + " phrase lists (" + file.length() + " bytes) to " +
+        file);
+  }
+}
@@ -0,0 +1,144 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+/**
+ * Functions for phrases packed into a single long, so that large numbers of
+ * phrases can be generated and stored without allocating objects.
+ *
+ * <p>Bits 55 to 58 hold the number of intervals. Each interval takes 5 bits
+ * (half steps plus 16), starting with the first interval in bits 50 to 54.
+ * Unused intervals are zero. Comparing two codes as longs gives the same order as
+ * comparing the phrases: shorter phrases first, then by each interval in turn.
+ */
+class PhraseCode {
+  static final int MAX_INTERVALS = 11;
+  static final int MIN_HALF_STEPS = -16;
+  static final int MAX_HALF_STEPS = 15;
+
+  /** The code for a phrase with no intervals. */
+  static final long EMPTY = 0L;
+
+  private static final int BITS_PER_INTERVAL = 5;
+  private static final int INTERVAL_MASK = (1 << BITS_PER_INTERVAL) - 1;
+  private static final int LENGTH_SHIFT = BITS_PER_INTERVAL * MAX_INTERVALS;
+  private static final long INTERVALS_MASK = (1L << LENGTH_SHIFT) - 1;
+
+  private PhraseCode() {}
+
+  static long encode(int[] intervals) {
+    long result = EMPTY;
+    for (int interval : intervals) {
+      result = append(result, interval);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the code for the given phrase with one more interval on the end.
+   */
+  static long append(long code, int halfSteps) {
+    int length = length(code);
+    if (length >= MAX_INTERVALS) {
+      throw new IllegalArgumentException("phrase too long: " + (length + 1) + " intervals");
+    }
+    if (halfSteps < MIN_HALF_STEPS || halfSteps > MAX_HALF_STEPS) {
+      throw new IllegalArgumentException("interval too large: " + halfSteps);
+    }
+    long intervals = (code & INTERVALS_MASK) |
+        ((long) (halfSteps - MIN_HALF_STEPS) << shift(length));
+    return ((long) (length + 1) << LENGTH_SHIFT) | intervals;
+  }
+
+  /**
+   * Returns the number of intervals in the phrase. (One less than the number of notes.)
+   */
+  static int length(long code) {
+    return (int) (code >>> LENGTH_SHIFT);
+  }
+
+  /**
+   * Returns the interval at the given position, in half steps. (Negative if descending.)
+   */
+  static int get(long code, int position) {
+    return (int) ((code >>> shift(position)) & INTERVAL_MASK) + MIN_HALF_STEPS;
+  }
+
+  /**
+   * Returns the lowest note in the phrase, relative to the first note.
+   */
+  static int minOffset(long code) {
+    int length = length(code);
+    int offset = 0;
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      offset += get(code, i);
+      result = Math.min(result, offset);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the highest note in the phrase, relative to the first note.
+   */
+  static int maxOffset(long code) {
+    int length = length(code);
+    int offset = 0;
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      offset += get(code, i);
+      result = Math.max(result, offset);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the distance between the lowest and highest notes in the phrase.
+   */
+  static int range(long code) {
+    return maxOffset(code) - minOffset(code);
+  }
+
+  /**
+   * Returns the notes used by the phrase as a 12-bit scale mask, with the first
+   * note as the tonic.
+   */
+  static int getScaleBits(long code) {
+    int length = length(code);
+    int note = 0;
+    int result = 1;
+    for (int i = 0; i < length; i++) {
+      note += get(code, i);
+      result |= 1 << Util.modulus(note, 12);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the ascending intervals used in the phrase as a bitmask. (Bit n is set
+   * if the phrase contains an interval of n half steps in either direction.)
+   */
+  static int getAscendingBits(long code) {
+    int length = length(code);
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      result |= 1 << Math.abs(get(code, i));
+    }
+    return result;
+  }
+
+  static String toString(long code) {
+    StringBuilder result = new StringBuilder();
+    int length = length(code);
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        result.append(" ");
+      }
+      result.append(get(code, i));
+    }
+    return result.toString();
+  }
+
+  private static int shift(int position) {
+    return LENGTH_SHIFT - BITS_PER_INTERVAL * (position + 1);
+  }
+}
@@ -0,0 +1,159 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Arrays;
+
+/**
+ * Intervals that every generated phrase must contain, for drilling particular intervals.
+ * An interval may be required anywhere in the phrase or at a given position.
+ * (Direction doesn't matter; intervals are stored as ascending half steps.)
+ *
+ * <p>Phrase searches use {@link #canFinish} to stop as soon as there are too few moves
+ * left to fit in the required intervals that haven't been seen yet, so a rare
+ * interval costs about as much to drill as a common one.
+ */
+class PhraseConstraint {
+  static final PhraseConstraint NONE = new PhraseConstraint(0, new int[0]);
+
+  private static final int UNPINNED = -1;
+
+  // bit n is set if an n-half-step interval must appear somewhere
+  private final int requiredBits;
+  // the interval required at each position, or UNPINNED
+  private final int[] pinned;
+
+  // indexed by position: the intervals pinned at that position or later, and how many
+  private final int[] pinnedBitsFrom;
+  private final int[] pinnedCountFrom;
+
+  private PhraseConstraint(int requiredBits, int[] pinned) {
+    this.requiredBits = requiredBits;
+    this.pinned = pinned;
+    this.pinnedBitsFrom = new int[PhraseCode.MAX_INTERVALS + 1];
+    this.pinnedCountFrom = new int[PhraseCode.MAX_INTERVALS + 1];
+    for (int i = pinned.length - 1; i >= 0; i--) {
+      pinnedBitsFrom[i] = pinnedBitsFrom[i + 1];
+      pinnedCountFrom[i] = pinnedCountFrom[i + 1];
+      if (pinned[i] != UNPINNED) {
+        pinnedBitsFrom[i] |= 1 << pinned[i];
+        pinnedCountFrom[i]++;
+      }
+    }
+  }
+
+  /**
+   * Returns a constraint that also requires the given interval somewhere in the phrase.
+   */
+  PhraseConstraint require(Interval interval) {
+    return new PhraseConstraint(requiredBits | bit(interval.toAscending().getHalfSteps()),
+        pinned);
+  }
+
+  /**
+   * Returns a constraint that also requires the given interval at the given position.
+   * (Position 0 is the interval between the first and second notes.) Phrases that are too
+   * short to have an interval at that position aren't allowed.
+   */
+  PhraseConstraint require(Interval interval, int position) {
+    if (position < 0 || position >= PhraseCode.MAX_INTERVALS) {
+      throw new IllegalArgumentException("position out of range: " + position);
+    }
+    int[] newPinned = Arrays.copyOf(pinned, Math.max(pinned.length, position + 1));
+    for (int i = pinned.length; i < newPinned.length; i++) {
+      newPinned[i] = UNPINNED;
+    }
+    int halfSteps = interval.toAscending().getHalfSteps();
+    newPinned[position] = halfSteps;
+    return new PhraseConstraint(requiredBits | bit(halfSteps), newPinned);
+  }
+
+  boolean isEmpty() {
+    return requiredBits == 0;
+  }
+
+  /**
+   * Returns the intervals that a phrase must contain, as a bitmask. (See
+   * {@link IntervalFilter#getBits}.)
+   */
+  int getRequiredBits() {
+    return requiredBits;
+  }
+
+  /**
+   * Returns true if a move of the given number of half steps (in either direction)
+   * may be at the given position.
+   */
+  boolean allowsMove(int position, int halfSteps) {
+    return position >= pinned.length || pinned[position] == UNPINNED ||
+        pinned[position] == Math.abs(halfSteps);
+  }
+
+  /**
+   * Adds a move to the set of required intervals found so far.
+   */
+  int addFound(int foundBits, int halfSteps) {
+    return foundBits | (requiredBits & bit(Math.abs(halfSteps)));
+  }
+
+  /**
+   * Returns true if a phrase can still meet the constraint, by counting the
+   * moves left that could hold the missing intervals.
+   * @param foundBits the required intervals in the phrase so far
+   * @param position the number of moves so far
+   * @param moveCount the number of moves in a finished phrase
+   */
+  boolean canFinish(int foundBits, int position, int moveCount) {
+    if (requiredBits == 0) {
+      return true;
+    }
+    if (pinned.length > moveCount) {
+      return false;
+    }
+    // pinned intervals will be found when we get there
+    int missing = requiredBits & ~foundBits & ~pinnedBitsFrom[position];
+    int freeMoves = moveCount - position - pinnedCountFrom[position];
+    return Integer.bitCount(missing) <= freeMoves;
+  }
+
+  /**
+   * Returns true if the given {@link PhraseCode} meets the constraint.
+   */
+  boolean allowsPhrase(long code) {
+    int length = PhraseCode.length(code);
+    if (pinned.length > length) {
+      return false;
+    }
+    for (int i = 0; i < pinned.length; i++) {
+      if (!allowsMove(i, PhraseCode.get(code, i))) {
+        return false;
+      }
+    }
+    return (PhraseCode.getAscendingBits(code) & requiredBits) == requiredBits;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * requiredBits + Arrays.hashCode(pinned);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof PhraseConstraint)) {
+      return false;
+    }
+    PhraseConstraint other = (PhraseConstraint) obj;
+    return requiredBits == other.requiredBits && Arrays.equals(pinned, other.pinned);
+  }
+
+  @Override
+  public String toString() {
+    return "PhraseConstraint(" + Integer.toBinaryString(requiredBits) + ", " +
+        Arrays.toString(pinned) + ")";
+  }
+
+  // === private methods ===
+
+  private static int bit(int halfSteps) {
+    return 1 << halfSteps;
+  }
+}
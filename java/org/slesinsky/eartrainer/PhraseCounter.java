@@ -0,0 +1,130 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Counts the phrases in a phrase space without generating them, and chooses
+ * phrases from it uniformly at random. This makes long phrases practical, since
+ * the number of phrases grows exponentially with the number of notes.
+ *
+ * <p>Rather than following each starting note separately, the counter keeps
+ * track of the set of notes the phrase could be on so far (one for each
+ * possible starting note in the scale). Each phrase then corresponds to exactly
+ * one path, so paths can be counted by dynamic programming over that set, the
+ * number of moves remaining, and the position of the current note within the
+ * phrase's range so far. (When there's a {@link PhraseConstraint}, also over the
+ * required intervals found so far.)
+ */
+class PhraseCounter {
+  private static final int MAX_RANGE = 127;
+
+  private final MoveTable table;
+  private final int scaleBits;
+  private final int[] moves;
+  private final int moveCount;
+  private final int maxRange;
+  private final PhraseConstraint constraint;
+  private final Map<Long, Long> counts = new HashMap<Long, Long>();
+
+  PhraseCounter(MoveTable table, int noteCount, int maxRange) {
+    this(table, noteCount, maxRange, PhraseConstraint.NONE);
+  }
+
+  PhraseCounter(MoveTable table, int noteCount, int maxRange, PhraseConstraint constraint) {
+    if (noteCount < 2 || noteCount > PhraseCode.MAX_INTERVALS + 1) {
+      throw new IllegalArgumentException("unsupported number of notes: " + noteCount);
+    }
+    if (maxRange > MAX_RANGE) {
+      throw new IllegalArgumentException("range too large: " + maxRange);
+    }
+    this.table = table;
+    this.scaleBits = table.getScaleBits();
+    this.moves = table.getMoves();
+    this.moveCount = noteCount - 1;
+    this.maxRange = maxRange;
+    this.constraint = constraint;
+  }
+
+  /**
+   * Returns the number of different phrases in the space.
+   */
+  long count() {
+    return count(scaleBits, 0, 0, moveCount, 0);
+  }
+
+  /**
+   * Returns a phrase chosen uniformly at random, in time proportional to its length.
+   * (Assumes that the space isn't empty.)
+   */
+  long choose(Random randomness) {
+    long remaining = Util.nextLong(randomness, count());
+    long code = PhraseCode.EMPTY;
+    int notes = scaleBits;
+    int position = 0;
+    int span = 0;
+    int found = 0;
+    for (int movesLeft = moveCount; movesLeft > 0; movesLeft--) {
+      for (int move : moves) {
+        if (!constraint.allowsMove(moveCount - movesLeft, move)) {
+          continue;
+        }
+        int nextNotes = table.move(notes, move);
+        int nextPosition = position + move;
+        int nextSpan = Math.max(span, nextPosition) - Math.min(0, nextPosition);
+        nextPosition = Math.max(0, nextPosition);
+        int nextFound = constraint.addFound(found, move);
+        long choices = count(nextNotes, nextPosition, nextSpan, movesLeft - 1, nextFound);
+        if (remaining < choices) {
+          code = PhraseCode.append(code, move);
+          notes = nextNotes;
+          position = nextPosition;
+          span = nextSpan;
+          found = nextFound;
+          break;
+        }
+        remaining -= choices;
+      }
+    }
+    return code;
+  }
+
+  // === private methods ===
+
+  /**
+   * Returns the number of ways to finish a phrase.
+   * @param notes the notes (within the octave) where the phrase might be now
+   * @param position the current note, relative to the lowest note so far
+   * @param span the distance between the lowest and highest notes so far
+   * @param movesLeft the number of intervals still to be added
+   * @param found the required intervals in the phrase so far
+   */
+  private long count(int notes, int position, int span, int movesLeft, int found) {
+    int depth = moveCount - movesLeft;
+    if (notes == 0 || span > maxRange || !constraint.canFinish(found, depth, moveCount)) {
+      return 0;
+    }
+    if (movesLeft == 0) {
+      return 1;
+    }
+    long key = ((((long) found << 4 | movesLeft) << 7 | span) << 7 | position) << 12 | notes;
+    Long cached = counts.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    long result = 0;
+    for (int move : moves) {
+      if (!constraint.allowsMove(depth, move)) {
+        continue;
+      }
+      int nextPosition = position + move;
+      int nextSpan = Math.max(span, nextPosition) - Math.min(0, nextPosition);
+      result += count(table.move(notes, move), Math.max(0, nextPosition), nextSpan,
+          movesLeft - 1, constraint.addFound(found, move));
+    }
+    counts.put(key, result);
+    return result;
+  }
+}
@@ -0,0 +1,314 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * All the phrases allowed by a scale, interval filter, direction filter and
+ * number of notes, without generating them up front. The phrases are
+ * available as a stream of {@link PhraseCode}s, which may be enumerated
+ * in parallel.
+ *
+ * <p>Rather than searching from each starting note separately, the search keeps
+ * track of the set of notes the phrase could be on so far, one for each note in
+ * the scale where it might have started. (See {@link PhraseCounter}.) So each
+ * phrase is visited exactly once, no matter how many notes it could start on,
+ * and no duplicates need to be removed.
+ *
+ * <p>A phrase space may also be limited by a {@link PhraseConstraint}. Branches of
+ * the search that can't meet the constraint are pruned.
+ *
+ * <p>The work is split up by the first two intervals of the phrase.
+ */
+class PhraseSpace {
+  private static final int PARALLEL_THRESHOLD = 20000;
+  private static final int MAX_PREFIX_LENGTH = 2;
+
+  private final MoveTable table;
+  private final int[] moves;
+  private final int moveCount;
+  private final int maxRange;
+  private final PhraseConstraint constraint;
+
+  // each unit of work is a valid start of a phrase
+  private final int prefixLength;
+  private final LongList unitCodes = new LongList();
+  private final LongList unitStates = new LongList();
+
+  PhraseSpace(Scale scale, IntervalFilter intervals, DirectionFilter direction, int noteCount,
+      int maxRange) {
+    this(MoveTable.compile(scale, intervals, direction), noteCount, maxRange);
+  }
+
+  PhraseSpace(MoveTable table, int noteCount, int maxRange) {
+    this(table, noteCount, maxRange, PhraseConstraint.NONE);
+  }
+
+  /**
+   * Creates a phrase space that only includes phrases meeting the given constraint.
+   */
+  PhraseSpace(MoveTable table, int noteCount, int maxRange, PhraseConstraint constraint) {
+    if (noteCount < 2 || noteCount > PhraseCode.MAX_INTERVALS + 1) {
+      throw new IllegalArgumentException("unsupported number of notes: " + noteCount);
+    }
+    this.table = table;
+    this.moves = table.getMoves();
+    this.moveCount = noteCount - 1;
+    this.maxRange = maxRange;
+    this.constraint = constraint;
+    this.prefixLength = Math.min(MAX_PREFIX_LENGTH, moveCount);
+    if (constraint.canFinish(0, 0, moveCount)) {
+      addUnits(table.getScaleBits(), PhraseCode.EMPTY, 0, 0, 0, 0);
+    }
+  }
+
+  int getNoteCount() {
+    return moveCount + 1;
+  }
+
+  /**
+   * Returns a rough upper bound on the number of phrases, without generating them.
+   */
+  long estimateSize() {
+    return estimateSize(unitCodes.size());
+  }
+
+  Spliterator.OfLong spliterator() {
+    return new PhraseSpliterator(0, unitCodes.size());
+  }
+
+  LongStream stream() {
+    return StreamSupport.longStream(spliterator(), false);
+  }
+
+  LongStream parallelStream() {
+    return StreamSupport.longStream(spliterator(), true);
+  }
+
+  /**
+   * Generates every phrase in the space, in parallel if there are likely to be many.
+   */
+  LongList toList() {
+    LongStream codes = estimateSize() > PARALLEL_THRESHOLD ? parallelStream() : stream();
+    return new LongList(codes.toArray());
+  }
+
+  // === private methods ===
+
+  private void addUnits(int notes, long code, int offset, int min, int max, int found) {
+    int depth = PhraseCode.length(code);
+    if (depth == prefixLength) {
+      unitCodes.add(code);
+      unitStates.add(State.pack(notes, offset, min, max, found));
+      return;
+    }
+    for (int move : moves) {
+      int nextNotes = table.move(notes, move);
+      int nextOffset = offset + move;
+      int nextMin = Math.min(min, nextOffset);
+      int nextMax = Math.max(max, nextOffset);
+      if (nextNotes != 0 && nextMax - nextMin <= maxRange && canMove(found, depth, move)) {
+        addUnits(nextNotes, PhraseCode.append(code, move), nextOffset, nextMin, nextMax,
+            constraint.addFound(found, move));
+      }
+    }
+  }
+
+  /**
+   * Returns false if taking the given move after the given number of moves would make
+   * it impossible to meet the constraint.
+   */
+  private boolean canMove(int found, int depth, int move) {
+    return constraint.allowsMove(depth, move) &&
+        constraint.canFinish(constraint.addFound(found, move), depth + 1, moveCount);
+  }
+
+  private long estimateSize(int units) {
+    long result = units;
+    int branching = moves.length;
+    if (branching == 0) {
+      return result;
+    }
+    for (int i = prefixLength; i < moveCount && result < Long.MAX_VALUE / branching; i++) {
+      result *= branching;
+    }
+    return result;
+  }
+
+  /**
+   * Packs the state of a partial phrase into a long: the set of notes it might be on,
+   * its current, lowest, and highest notes relative to the first note, and which
+   * required intervals it contains so far.
+   */
+  private static class State {
+    private static final int OFFSET_BIAS = 1 << 11;
+
+    static long pack(int notes, int offset, int min, int max, int found) {
+      return (long) found << 48 | (long) notes << 36 |
+          (long) (offset + OFFSET_BIAS) << 24 | (long) (min + OFFSET_BIAS) << 12 |
+          (max + OFFSET_BIAS);
+    }
+
+    static int found(long state) {
+      return (int) (state >>> 48);
+    }
+
+    static int notes(long state) {
+      return (int) ((state >>> 36) & 0xfff);
+    }
+
+    static int offset(long state) {
+      return (int) ((state >>> 24) & 0xfff) - OFFSET_BIAS;
+    }
+
+    static int min(long state) {
+      return (int) ((state >>> 12) & 0xfff) - OFFSET_BIAS;
+    }
+
+    static int max(long state) {
+      return (int) (state & 0xfff) - OFFSET_BIAS;
+    }
+  }
+
+  /**
+   * Enumerates the phrases for a range of work units.
+   */
+  private class PhraseSpliterator implements Spliterator.OfLong {
+    private int unit;
+    private final int endUnit;
+
+    // an explicit stack for depth-first search within the current unit;
+    // level d holds the state after d moves.
+    private final int[] notes = new int[moveCount + 1];
+    private final int[] offsets = new int[moveCount + 1];
+    private final int[] mins = new int[moveCount + 1];
+    private final int[] maxes = new int[moveCount + 1];
+    private final long[] codes = new long[moveCount + 1];
+    private final int[] found = new int[moveCount + 1];
+    private final int[] nextMove = new int[moveCount + 1];
+    private int depth = -1;
+
+    PhraseSpliterator(int unit, int endUnit) {
+      this.unit = unit;
+      this.endUnit = endUnit;
+    }
+
+    public boolean tryAdvance(LongConsumer action) {
+      while (true) {
+        if (depth < 0) {
+          if (unit >= endUnit) {
+            return false;
+          }
+          startUnit(unit++);
+        }
+        long code = advance();
+        if (code >= 0) {
+          action.accept(code);
+          return true;
+        }
+      }
+    }
+
+    @Override
+    public void forEachRemaining(LongConsumer action) {
+      if (depth >= 0) {
+        long code;
+        while ((code = advance()) >= 0) {
+          action.accept(code);
+        }
+      }
+      while (unit < endUnit) {
+        long state = unitStates.get(unit);
+        generate(State.notes(state), unitCodes.get(unit), State.offset(state),
+            State.min(state), State.max(state), State.found(state), prefixLength, action);
+        unit++;
+      }
+    }
+
+    public Spliterator.OfLong trySplit() {
+      if (depth >= 0 || endUnit - unit < 2) {
+        return null;
+      }
+      int middle = (unit + endUnit) >>> 1;
+      PhraseSpliterator prefix = new PhraseSpliterator(unit, middle);
+      unit = middle;
+      return prefix;
+    }
+
+    public long estimateSize() {
+      return PhraseSpace.this.estimateSize(endUnit - unit);
+    }
+
+    public int characteristics() {
+      return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+
+    private void startUnit(int unit) {
+      long state = unitStates.get(unit);
+      depth = prefixLength;
+      notes[depth] = State.notes(state);
+      offsets[depth] = State.offset(state);
+      mins[depth] = State.min(state);
+      maxes[depth] = State.max(state);
+      codes[depth] = unitCodes.get(unit);
+      found[depth] = State.found(state);
+      nextMove[depth] = 0;
+    }
+
+    /**
+     * Continues the search in the current unit. Returns the next phrase, or -1 when
+     * the unit is finished.
+     */
+    private long advance() {
+      while (depth >= prefixLength) {
+        if (depth == moveCount) {
+          return codes[depth--];
+        }
+        if (nextMove[depth] >= moves.length) {
+          depth--;
+          continue;
+        }
+        int move = moves[nextMove[depth]++];
+        int nextNotes = table.move(notes[depth], move);
+        int offset = offsets[depth] + move;
+        int min = Math.min(mins[depth], offset);
+        int max = Math.max(maxes[depth], offset);
+        if (nextNotes != 0 && max - min <= maxRange && canMove(found[depth], depth, move)) {
+          int next = depth + 1;
+          notes[next] = nextNotes;
+          offsets[next] = offset;
+          mins[next] = min;
+          maxes[next] = max;
+          codes[next] = PhraseCode.append(codes[depth], move);
+          found[next] = constraint.addFound(found[depth], move);
+          nextMove[next] = 0;
+          depth = next;
+        }
+      }
+      depth = -1;
+      return -1;
+    }
+
+    private void generate(int notes, long code, int offset, int min, int max,
+        int found, int depth, LongConsumer action) {
+      if (depth == moveCount) {
+        action.accept(code);
+        return;
+      }
+      for (int move : moves) {
+        int nextNotes = table.move(notes, move);
+        int nextOffset = offset + move;
+        int nextMin = Math.min(min, nextOffset);
+        int nextMax = Math.max(max, nextOffset);
+        if (nextNotes != 0 && nextMax - nextMin <= maxRange &&
+            canMove(found, depth, move)) {
+          generate(nextNotes, PhraseCode.append(code, move), nextOffset, nextMin, nextMax,
+              constraint.addFound(found, move), depth + 1, action);
+        }
+      }
+    }
+  }
+}
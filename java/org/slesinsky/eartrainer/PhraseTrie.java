@@ -0,0 +1,138 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Arrays;
+
+/**
+ * A prefix tree of the phrases in a phrase space, keyed by ascending interval
+ * (the answers the user can choose). Given the intervals answered so far, it tells
+ * which answers could still lead to a phrase in the space.
+ *
+ * <p>The nodes are stored in two arrays in breadth-first order, so the children of a
+ * node are next to each other. Each node has a bitmask of the intervals that lead
+ * to its children (as in {@link IntervalFilter#getBits}) and the index of its first
+ * child; the rest are found by counting bits in the mask.
+ */
+class PhraseTrie {
+  static final int ROOT = 0;
+
+  private final int[] childBits;
+  private final int[] firstChild;
+
+  private PhraseTrie(int[] childBits, int[] firstChild) {
+    this.childBits = childBits;
+    this.firstChild = firstChild;
+  }
+
+  /**
+   * Builds a trie from a list of {@link PhraseCode}s, which must all be the same length.
+   */
+  static PhraseTrie build(LongSequence phrases) {
+    if (phrases.size() == 0) {
+      return new PhraseTrie(new int[1], new int[1]);
+    }
+
+    // sort the phrases by ascending interval
+    int length = PhraseCode.length(phrases.get(0));
+    long[] keys = new long[phrases.size()];
+    for (int i = 0; i < keys.length; i++) {
+      long phrase = phrases.get(i);
+      if (PhraseCode.length(phrase) != length) {
+        throw new IllegalArgumentException("phrases have different lengths: " +
+            PhraseCode.toString(phrase));
+      }
+      keys[i] = toAscending(phrase);
+    }
+    Arrays.sort(keys);
+
+    // find where each key first differs from the one before it
+    // (a prefix of length d starts a new node if it differs before position d)
+    int[] firstDifference = new int[keys.length];
+    int nodeCount = 1;
+    for (int i = 0; i < keys.length; i++) {
+      firstDifference[i] = i == 0 ? 0 : firstDifference(keys[i - 1], keys[i], length);
+      nodeCount += length - firstDifference[i];
+    }
+
+    int[] childBits = new int[nodeCount];
+    int[] firstChild = new int[nodeCount];
+    int levelStart = ROOT;
+    int nextLevelStart = ROOT + 1;
+    for (int depth = 0; depth < length; depth++) {
+      int node = levelStart - 1;
+      int child = nextLevelStart - 1;
+      for (int i = 0; i < keys.length; i++) {
+        if (firstDifference[i] < depth || i == 0) {
+          node++;
+          firstChild[node] = child + 1;
+        }
+        if (firstDifference[i] <= depth) {
+          child++;
+          childBits[node] |= 1 << PhraseCode.get(keys[i], depth);
+        }
+      }
+      levelStart = nextLevelStart;
+      nextLevelStart = child + 1;
+    }
+    return new PhraseTrie(childBits, firstChild);
+  }
+
+  int getNodeCount() {
+    return childBits.length;
+  }
+
+  /**
+   * Returns the ascending intervals that can follow the given node, as a bitmask.
+   */
+  int getChoiceBits(int node) {
+    return childBits[node];
+  }
+
+  /**
+   * Returns the node reached by answering the given ascending interval, or -1 if
+   * no phrase continues that way.
+   */
+  int getChild(int node, int halfSteps) {
+    int bit = 1 << halfSteps;
+    int bits = childBits[node];
+    if ((bits & bit) == 0) {
+      return -1;
+    }
+    return firstChild[node] + Integer.bitCount(bits & (bit - 1));
+  }
+
+  /**
+   * Returns the node for the first intervals of a phrase, or -1 if the trie doesn't
+   * contain a phrase starting that way.
+   * @param length the number of intervals to follow
+   */
+  int find(long code, int length) {
+    int node = ROOT;
+    for (int i = 0; i < length && node >= 0; i++) {
+      node = getChild(node, Math.abs(PhraseCode.get(code, i)));
+    }
+    return node;
+  }
+
+  // === private methods ===
+
+  private static long toAscending(long code) {
+    long result = PhraseCode.EMPTY;
+    for (int i = 0; i < PhraseCode.length(code); i++) {
+      result = PhraseCode.append(result, Math.abs(PhraseCode.get(code, i)));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the first position where two codes differ, or the length if they're the same.
+   */
+  private static int firstDifference(long a, long b, int length) {
+    for (int i = 0; i < length; i++) {
+      if (PhraseCode.get(a, i) != PhraseCode.get(b, i)) {
+        return i;
+      }
+    }
+    return length;
+  }
+}
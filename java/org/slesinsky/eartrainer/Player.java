@@ -0,0 +1,31 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+/**
+ * Plays phrases using some sound.
+ */
+interface Player {
+
+  Sound[] getSounds();
+
+  Sound getDefaultSound();
+
+  void setSound(Sound sound);
+
+  /**
+   * Starts playing a phrase, stopping the previous one if it's still playing.
+   * @param startNote the midi note number of the first note
+   */
+  void play(Phrase phrase, int startNote) throws UnavailableException;
+
+  /**
+   * Hints that a phrase will probably be played soon, so that the player can get
+   * ready to play it without delay.
+   */
+  void prepare(Phrase phrase, int startNote) throws UnavailableException;
+
+  /**
+   * Stops playing and releases any resources, such as background threads.
+   */
+  void shutdown();
+}
@@ -9,28 +9,49 @@ class Question {
   private final Phrase phrase;
   private final int startNote;
   private final IntervalFilter choices;
+  // the phrases this question was chosen from (may be null)
+  private final PhraseTrie trie;
 
   Question(Phrase phrase, int startNote, IntervalFilter choices) {
+    this(phrase, startNote, choices, null);
+  }
+
+  Question(Phrase phrase, int startNote, IntervalFilter choices, PhraseTrie trie) {
     this.phrase = phrase;
     this.startNote = startNote;
     this.choices = choices;
+    // a phrase that isn't in the trie (such as a review of a phrase from earlier
+    // settings) could have its answer pruned away
+    boolean inTrie = trie != null && trie.find(phrase.getCode(), phrase.getIntervalCount()) >= 0;
+    this.trie = inTrie ? trie : null;
   }
 
-  void play(SequencePlayer player) throws UnavailableException {
+  void play(Player player) throws UnavailableException {
     player.play(phrase, startNote);
   }
 
+  void prepare(Player player) throws UnavailableException {
+    player.prepare(phrase, startNote);
+  }
+
   boolean isCorrect(Interval candidate, int position) {
-    Interval answer = phrase.getIntervals().get(position).toAscending();
-    return answer.equals(candidate);
+    return Math.abs(phrase.getHalfSteps(position)) == candidate.getHalfSteps();
   }
 
   int getAnswerCount() {
-    return phrase.getIntervals().size();
+    return phrase.getIntervalCount();
   }
 
-  IntervalFilter getChoices() {
-    return choices;
+  /**
+   * Returns the choices for the interval at the given position, leaving out any that
+   * can't be right given the intervals before it. (If the question didn't come
+   * with a trie containing its phrase, returns all the choices.)
+   */
+  IntervalFilter getChoices(int position) {
+    if (trie == null) {
+      return choices;
+    }
+    return choices.intersectBits(trie.getChoiceBits(trie.find(phrase.getCode(), position)));
   }
 
   Phrase getPhrase() {
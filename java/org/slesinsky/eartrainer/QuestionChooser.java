@@ -2,10 +2,16 @@
 package org.slesinsky.eartrainer;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A configurable source of randomly generated musical questions.
@@ -18,91 +24,415 @@ class QuestionChooser {
       MIDDLE_C + Interval.OCTAVE.getHalfSteps() + Interval.PERFECT_FIFTH.getHalfSteps();
 
   static final int DEFAULT_NOTES_IN_PHRASE = 2;
-  static final int MAX_NOTES_IN_PHRASE = 5;
+  static final int MAX_NOTES_IN_PHRASE = PhraseCode.MAX_INTERVALS + 1;
   
   private static final int MIN_CHOICES = 3;
+  // larger phrase spaces are sampled instead of listed
+  static final int MAX_LISTED_PHRASES = PhraseCache.DEFAULT_MAX_PHRASES;
+  // tries for larger phrase lists are built in the background
+  private static final int MAX_PHRASES_FOR_IMMEDIATE_TRIE = 20000;
 
   private final Random randomness;
   private final ScoreKeeper scoreKeeper;
+  private final PhraseCache phraseCache;
+  private final List<Runnable> settingsChangeListeners = new ArrayList<Runnable>();
+  private PhraseCatalog catalog;
 
   private Scale scale;
   private IntervalFilter intervalFilter;
   private DirectionFilter directionFilter;
   private int noteCount;
+  private PhraseConstraint constraint;
+
+  // counts phrases for counterKey
+  private PhraseCache.Key counterKey;
+  private PhraseCounter counter;
+
+  // tests that phrases in the score keeper must pass to be reviewed
+  private final List<PhraseIndex<?>> reviewFilters = new ArrayList<PhraseIndex<?>>();
+
+  // the trie for trieKey, which may still be under construction
+  private final ExecutorService trieBuilder;
+  private PhraseCache.Key trieKey;
+  private Future<PhraseTrie> trie;
 
   QuestionChooser(Random randomness, ScoreKeeper scoreKeeper) {
     this.randomness = randomness;
     this.scoreKeeper = scoreKeeper;
+    this.phraseCache = new PhraseCache(PhraseCache.DEFAULT_MAX_PHRASES);
     this.scale = Scale.DEFAULT;
     this.intervalFilter = IntervalFilter.DEFAULT;
     this.directionFilter = DirectionFilter.DEFAULT;
     this.noteCount = DEFAULT_NOTES_IN_PHRASE;
+    this.constraint = PhraseConstraint.NONE;
+    this.trieBuilder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, "PhraseTrie builder");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    addReviewFilters();
   }
   
   void setIntervalAllowed(Interval choice, boolean newValue) {
+    IntervalFilter oldFilter = intervalFilter;
+    PhraseCache.Key oldKey = getSettingsKey();
+    int oldRange = intervalFilter.isEmpty() ? -1 : getMaxPhraseRange();
     if (newValue) {
       intervalFilter = intervalFilter.enable(choice);
     } else {
       intervalFilter = intervalFilter.disable(choice);
     }
+    if (!intervalFilter.equals(oldFilter)) {
+      updatePhrases(oldKey, oldRange, choice.toAscending(), newValue);
+    }
+    fireSettingsChange();
   }
 
   public void setScale(Scale scale) {
     this.scale = scale;
+    fireSettingsChange();
   }  
   
   void setNoteCount(int newValue) {
     this.noteCount = newValue;
+    fireSettingsChange();
   }
 
   void setDirectionFilter(DirectionFilter newValue) {
     this.directionFilter = newValue;
+    fireSettingsChange();
+  }
+
+  /**
+   * Limits new phrases to those containing certain intervals, for drilling them.
+   */
+  void setConstraint(PhraseConstraint newValue) {
+    this.constraint = newValue;
+    fireSettingsChange();
+  }
+
+  /**
+   * Sets a catalog of pre-generated phrases to use instead of generating them, when the
+   * current settings are in it. (May be null.)
+   */
+  void setCatalog(PhraseCatalog catalog) {
+    this.catalog = catalog;
+  }
+
+  void addSettingsChangeListener(Runnable listener) {
+    settingsChangeListeners.add(listener);
+  }
+
+  /**
+   * Returns the number of different phrases that the current settings allow.
+   * (Doesn't include recently missed phrases that are repeated for review.)
+   */
+  long countPhrases() {
+    PhraseCounter counter = getCounter();
+    return counter == null ? 0 : counter.count();
+  }
+
+  /**
+   * Returns the codes of the phrases that the current settings allow.
+   * (Doesn't include recently missed phrases that are repeated for review.)
+   */
+  LongSequence getPhrases() {
+    return generatePhrases();
   }
 
   Question chooseQuestion() throws UnavailableException {
+    return chooseQuestionAfter(scoreKeeper.getLastPhrase());
+  }
+
+  /**
+   * Chooses the question to ask after a question with the given phrase, which won't be
+   * repeated for review. (This allows choosing the next question while the previous one
+   * is still being answered, before it's scored.)
+   * @param previous the phrase not to repeat, or null
+   */
+  Question chooseQuestionAfter(Phrase previous) throws UnavailableException {
+    return chooseQuestions(1, previous).get(0);
+  }
+
+  /**
+   * Chooses several questions at once (for example, to print a worksheet). No phrase is
+   * used twice, so there may be fewer questions than requested if the settings don't
+   * allow enough phrases. The phrases are chosen to cover the enabled intervals evenly,
+   * and the start notes are spread out over the octave.
+   *
+   * <p>This is much cheaper than calling {@link #chooseQuestion} repeatedly, since the
+   * candidates are only gathered once.
+   */
+  List<Question> chooseQuestions(int count) throws UnavailableException {
+    return chooseQuestions(count, scoreKeeper.getLastPhrase());
+  }
+
+  private List<Question> chooseQuestions(int count, Phrase lastPhrase)
+      throws UnavailableException {
+    if (count < 1) {
+      throw new IllegalArgumentException("count must be positive: " + count);
+    }
+    int poolSize = count * MIN_CHOICES;
 
     // repeat recently wrong answers, if still valid
-    List<Phrase> choices = new ArrayList<Phrase>();
-    Set<Phrase> candidates = scoreKeeper.getPhrasesWithWinningStreakLessThan(2);
-    for (Phrase candidate : candidates) {
-      if (candidate != scoreKeeper.getLastPhrase() &&
-          candidate.getIntervals().size() + 1 == noteCount &&
-          intervalFilter.allows(candidate) &&
-          directionFilter.allows(candidate) &&
-          candidate.canTransposeToScale(scale)) {
-        choices.add(candidate);
+    LongList pool = new LongList();
+    LongHashSet chosen = new LongHashSet();
+    BitSet candidates = scoreKeeper.getPhrasesToReview();
+    for (PhraseIndex<?> filter : reviewFilters) {
+      candidates.and(filter.getMatches());
+    }
+    for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+      long candidate = scoreKeeper.getPhraseCode(id);
+      if (lastPhrase == null || candidate != lastPhrase.getCode()) {
+        pool.add(candidate);
+        chosen.add(candidate);
       }
     }
-    
-    if (choices.size() < MIN_CHOICES) {
-    
-      // add a few choices from newly generated answers  
-      List<Phrase> generated = generatePhrases();
-      if (generated.isEmpty()) {
+
+    LongSequence generated = null;
+    if (pool.size() < poolSize) {
+      long phraseCount = countPhrases();
+      if (phraseCount == 0) {
         throw new UnavailableException("unable to generate any phrases with these settings");
       }
-  
-      while (choices.size() < MIN_CHOICES && !generated.isEmpty()) {
-        Phrase candidate = Util.choose(randomness, generated);
-        generated.remove(candidate);
-        if (!choices.contains(candidate)) {
-          choices.add(candidate);
+
+      if (phraseCount > MAX_LISTED_PHRASES) {
+
+        // too many phrases to list, so pick some at random
+        PhraseCounter counter = getCounter();
+        for (int attempts = (poolSize - pool.size()) * 2;
+             attempts > 0 && pool.size() < poolSize; attempts--) {
+          long candidate = counter.choose(randomness);
+          if (chosen.add(candidate)) {
+            pool.add(candidate);
+          }
+        }
+      } else {
+
+        // add some choices from newly generated answers
+        generated = generatePhrases();
+        for (int index : Util.chooseDistinctIndexes(randomness, generated.size(), poolSize)) {
+          long candidate = generated.get(index);
+          if (pool.size() < poolSize && chosen.add(candidate)) {
+            pool.add(candidate);
+          }
+        }
+      }
+    }
+
+    PhraseTrie trie = getTrie(generated);
+    IntervalFilter choices = intervalFilter.intersectScale(scale);
+    long[] phrases = pool.toArray();
+    int[] phraseBits = new int[phrases.length];
+    for (int i = 0; i < phrases.length; i++) {
+      phraseBits[i] = PhraseCode.getAscendingBits(phrases[i]);
+    }
+    int remaining = phrases.length;
+    int[] intervalUses = new int[Interval.OCTAVE.getHalfSteps() + 1];
+    int[] startNoteUses = new int[MoveTable.OCTAVE];
+
+    List<Question> result = new ArrayList<Question>();
+    while (result.size() < count && remaining > 0) {
+      int index = chooseLeastCovered(phraseBits, remaining, intervalUses);
+      long phrase = phrases[index];
+      for (int i = 0; i < intervalUses.length; i++) {
+        if ((phraseBits[index] & (1 << i)) != 0) {
+          intervalUses[i]++;
+        }
+      }
+      remaining--;
+      phrases[index] = phrases[remaining];
+      phraseBits[index] = phraseBits[remaining];
+
+      int startNote = chooseStartNote(phrase, startNoteUses);
+      startNoteUses[startNote % MoveTable.OCTAVE]++;
+      result.add(new Question(new Phrase(phrase), startNote, choices, trie));
+    }
+    return result;
+  }
+
+  PhraseCache getPhraseCache() {
+    return phraseCache;
+  }
+
+  // === private methods ===
+
+  private void fireSettingsChange() {
+    for (Runnable listener : settingsChangeListeners) {
+      listener.run();
+    }
+  }
+
+  private PhraseCache.Key getSettingsKey() {
+    return new PhraseCache.Key(scale, intervalFilter, directionFilter, noteCount, constraint);
+  }
+
+  /**
+   * Returns a counter for the current settings, or null if no intervals are allowed.
+   */
+  private PhraseCounter getCounter() {
+    if (intervalFilter.isEmpty()) {
+      return null;
+    }
+    PhraseCache.Key key = getSettingsKey();
+    if (!key.equals(counterKey)) {
+      counter = new PhraseCounter(MoveTable.compile(scale, intervalFilter, directionFilter),
+          noteCount, getMaxPhraseRange(intervalFilter, noteCount), constraint);
+      counterKey = key;
+    }
+    return counter;
+  }
+
+  /**
+   * Returns the trie for the current settings if it's ready, or null if not.
+   * If it hasn't been started, builds it from the given phrases, which should be
+   * the phrases for the current settings (or null if they weren't listed).
+   * Large tries are built in the background, so they will be ready for a later question.
+   */
+  private PhraseTrie getTrie(final LongSequence phrases) {
+    PhraseCache.Key key = getSettingsKey();
+    if (!key.equals(trieKey)) {
+      if (phrases == null) {
+        return null;
+      }
+      if (trie != null) {
+        trie.cancel(false);
+      }
+      FutureTask<PhraseTrie> task = new FutureTask<PhraseTrie>(new Callable<PhraseTrie>() {
+        public PhraseTrie call() {
+          return PhraseTrie.build(phrases);
+        }
+      });
+      if (phrases.size() <= MAX_PHRASES_FOR_IMMEDIATE_TRIE) {
+        task.run();
+      } else {
+        trieBuilder.execute(task);
+      }
+      trie = task;
+      trieKey = key;
+    }
+    if (!trie.isDone()) {
+      return null;
+    }
+    try {
+      return trie.get();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("unable to build phrase trie", e.getCause());
+    }
+  }
+
+  /**
+   * Returns the index of a phrase containing one of the least-used intervals so far,
+   * chosen at random among ties.
+   */
+  private int chooseLeastCovered(int[] phraseBits, int count, int[] intervalUses) {
+    int result = -1;
+    int bestScore = Integer.MAX_VALUE;
+    int ties = 0;
+    for (int i = 0; i < count; i++) {
+      int score = Integer.MAX_VALUE;
+      for (int interval = 0; interval < intervalUses.length; interval++) {
+        if ((phraseBits[i] & (1 << interval)) != 0) {
+          score = Math.min(score, intervalUses[interval]);
         }
       }
+      if (score < bestScore) {
+        result = i;
+        bestScore = score;
+        ties = 1;
+      } else if (score == bestScore && randomness.nextInt(++ties) == 0) {
+        result = i;
+      }
     }
-    Phrase phrase = Util.choose(randomness, choices);
-    Integer startNote = phrase.chooseRandomStartNote(randomness, LOWEST_NOTE, HIGHEST_NOTE);
-    if (startNote == null) {
-      throw new RuntimeException("phrase should be in range: " + phrase);
+    return result;
+  }
+
+  /**
+   * Chooses a start note that keeps the phrase in range, preferring the notes
+   * of the octave that have been used the least, at random among ties.
+   */
+  private int chooseStartNote(long phrase, int[] startNoteUses) {
+    int minStartNote = LOWEST_NOTE - PhraseCode.minOffset(phrase);
+    int maxStartNote = HIGHEST_NOTE - PhraseCode.maxOffset(phrase);
+    if (minStartNote > maxStartNote) {
+      throw new RuntimeException("phrase should be in range: " + PhraseCode.toString(phrase));
+    }
+    int result = minStartNote;
+    int bestUses = Integer.MAX_VALUE;
+    int ties = 0;
+    for (int note = minStartNote; note <= maxStartNote; note++) {
+      int uses = startNoteUses[note % MoveTable.OCTAVE];
+      if (uses < bestUses) {
+        result = note;
+        bestUses = uses;
+        ties = 1;
+      } else if (uses == bestUses && randomness.nextInt(++ties) == 0) {
+        result = note;
+      }
     }
-    return new Question(phrase, startNote, intervalFilter.intersectScale(scale));
+    return result;
+  }
+
+  /**
+   * Sets up a filter for each setting that review phrases must match.
+   */
+  private void addReviewFilters() {
+    reviewFilters.add(new PhraseIndex<Integer>() {
+      Integer getSetting() {
+        return noteCount;
+      }
+      boolean matches(Integer setting, long phrase) {
+        return PhraseCode.length(phrase) + 1 == setting;
+      }
+    });
+    reviewFilters.add(new PhraseIndex<IntervalFilter>() {
+      IntervalFilter getSetting() {
+        return intervalFilter;
+      }
+      boolean matches(IntervalFilter setting, long phrase) {
+        return setting.allowsPhrase(phrase);
+      }
+    });
+    reviewFilters.add(new PhraseIndex<DirectionFilter>() {
+      DirectionFilter getSetting() {
+        return directionFilter;
+      }
+      boolean matches(DirectionFilter setting, long phrase) {
+        return setting.allowsPhrase(phrase);
+      }
+    });
+    reviewFilters.add(new PhraseIndex<Scale>() {
+      Scale getSetting() {
+        return scale;
+      }
+      boolean matches(Scale setting, long phrase) {
+        return ContainmentTable.containsAnywhere(setting.getBits(),
+            PhraseCode.getScaleBits(phrase));
+      }
+    });
+    reviewFilters.add(new PhraseIndex<PhraseConstraint>() {
+      PhraseConstraint getSetting() {
+        return constraint;
+      }
+      boolean matches(PhraseConstraint setting, long phrase) {
+        return setting.allowsPhrase(phrase);
+      }
+    });
+  }
+
+  private int getMaxPhraseRange() {
+    return getMaxPhraseRange(intervalFilter, noteCount);
   }
 
   /**
    * Returns the range of a phrase including the largest interval, the second smallest
    * interval, and padded out with the smallest interval.
    */
-  private int getMaxPhraseRange() {
+  static int getMaxPhraseRange(IntervalFilter intervalFilter, int noteCount) {
     Interval smallest = intervalFilter.getSmallest();
     Interval secondSmallest = intervalFilter.getSecondSmallest();
     Interval largest = intervalFilter.getLargest();
@@ -119,42 +449,126 @@ class QuestionChooser {
     return Math.min(HIGHEST_NOTE - LOWEST_NOTE, range);
   }
 
-  private List<Phrase> generatePhrases() {
+  /**
+   * After a single interval was enabled or disabled, derives the new list of phrases from
+   * the old one (if it was cached), instead of generating it again from scratch.
+   * This only works if the maximum phrase range didn't increase, since otherwise some
+   * phrases using the old intervals would be missing. If enabling the interval allows
+   * too many phrases to list, they're counted instead (as in {@link #chooseQuestions}).
+   */
+  private void updatePhrases(PhraseCache.Key oldKey, int oldRange, Interval changed,
+      boolean enabled) {
     if (intervalFilter.isEmpty()) {
-      return new ArrayList<Phrase>();
+      return;
+    }
+    int range = getMaxPhraseRange();
+    if (range > oldRange) {
+      return;
+    }
+    LongSequence oldPhrases = findPhrases(oldKey);
+    if (oldPhrases == null) {
+      return;
+    }
+    if (enabled && countPhrases() > MAX_LISTED_PHRASES) {
+      return;
     }
 
-    Set<Phrase> result = new HashSet<Phrase>();
+    Profiler p = new Profiler();
+    LongList phrases = filterPhrases(oldPhrases, intervalFilter, directionFilter, scale, range);
+    if (enabled) {
+      // add just the phrases that use the new interval
+      MoveTable table = MoveTable.compile(scale, intervalFilter, directionFilter);
+      phrases.addAll(
+          new PhraseSpace(table, noteCount, range, constraint.require(changed)).toList());
+    }
+    p.log("updated phrase list to " + phrases.size() + " phrases");
+    phraseCache.put(getSettingsKey(), phrases);
+  }
 
-    IntervalFilter filter = intervalFilter.intersectScale(this.scale);
-    for (Scale scale : this.scale.getRotations()) {
-      Scale.Note tonic = scale.getTonic();
-      generatePhrases(filter, getMaxPhraseRange(), tonic, 
-          new Phrase.Builder(), noteCount - 1, result);
+  /**
+   * Returns the phrases (in their original order) that only use the given intervals and
+   * directions, can be transposed to fit the given scale, and span at most maxRange.
+   */
+  static LongList filterPhrases(LongSequence phrases, IntervalFilter intervals,
+      DirectionFilter direction, Scale scale, int maxRange) {
+    int scaleBits = scale.getBits();
+    LongList result = new LongList();
+    for (int i = 0; i < phrases.size(); i++) {
+      long code = phrases.get(i);
+      if (intervals.allowsPhrase(code) && direction.allowsPhrase(code) &&
+          PhraseCode.range(code) <= maxRange &&
+          ContainmentTable.containsAnywhere(scaleBits, PhraseCode.getScaleBits(code))) {
+        result.add(code);
+      }
     }
-    
-    System.out.println("phrase count: " + result.size());
-    return new ArrayList<Phrase>(result);
+    return result;
   }
 
-  private void generatePhrases(IntervalFilter filter, int maxPhraseRange, Scale.Note currentNote,
-      Phrase.Builder currentPhrase, int remainingNotes, Set<Phrase> result) {
+  /**
+   * Returns the phrases for the given settings from the catalog or the cache, or null
+   * if they need to be generated.
+   */
+  private LongSequence findPhrases(PhraseCache.Key key) {
+    if (catalog != null) {
+      LongSequence result = catalog.find(key);
+      if (result != null) {
+        return result;
+      }
+    }
+    return phraseCache.get(key);
+  }
 
-    if (!currentNote.inScale() || currentPhrase.range() > maxPhraseRange) {
-      return;  
+  /**
+   * Returns the codes of the phrases allowed by the current settings, generating them
+   * only if they aren't already in the catalog or cache.
+   */
+  private LongSequence generatePhrases() {
+    if (intervalFilter.isEmpty()) {
+      return new LongList();
     }
 
-    if (remainingNotes == 0) {
-      Phrase phrase = currentPhrase.build();
-      result.add(phrase);
-      return;
+    PhraseCache.Key key = getSettingsKey();
+    LongSequence found = findPhrases(key);
+    if (found != null) {
+      return found;
     }
-    
-    for (Interval interval : currentNote.generate(directionFilter, filter)) {
-      currentPhrase.add(interval);
-      generatePhrases(filter, maxPhraseRange, currentNote.add(interval), currentPhrase,
-          remainingNotes - 1, result);
-      currentPhrase.pop();
+
+    MoveTable table = MoveTable.compile(scale, intervalFilter, directionFilter);
+    PhraseSpace space = new PhraseSpace(table, noteCount, getMaxPhraseRange(), constraint);
+    LongList phrases = space.toList();
+    System.out.println("phrase count: " + phrases.size() + " " + phraseCache);
+    phraseCache.put(key, phrases);
+    return phrases;
+  }
+
+  /**
+   * The ids of the phrases in the score keeper that match one setting. When more phrases
+   * are added, only the new ones are checked. When the setting changes, all the phrases
+   * are checked again.
+   */
+  private abstract class PhraseIndex<T> {
+    private final BitSet matches = new BitSet();
+    private int checkedCount = 0;
+    private T checkedSetting;
+
+    abstract T getSetting();
+
+    abstract boolean matches(T setting, long phrase);
+
+    BitSet getMatches() {
+      T setting = getSetting();
+      if (!setting.equals(checkedSetting)) {
+        matches.clear();
+        checkedCount = 0;
+        checkedSetting = setting;
+      }
+      int idCount = scoreKeeper.getPhraseIdCount();
+      for (; checkedCount < idCount; checkedCount++) {
+        if (matches(setting, scoreKeeper.getPhraseCode(checkedCount))) {
+          matches.set(checkedCount);
+        }
+      }
+      return matches;
     }
   }
 }
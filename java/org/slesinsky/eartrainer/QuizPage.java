@@ -21,6 +21,9 @@ import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Provides a method to construct the Quiz Page UI.
@@ -28,7 +31,7 @@ import java.awt.event.ActionListener;
 class QuizPage {
 
   static JComponent create(IntervalChoices choices, QuestionChooser chooser,
-      ScoreKeeper scoreKeeper, Quizzer quizzer, SequencePlayer player) {
+      ScoreKeeper scoreKeeper, Quizzer quizzer, Player player) {
     return makeVerticalPage(
         makeHeader(quizzer),
         makeAnswerBar(quizzer),
@@ -155,7 +158,7 @@ class QuizPage {
     return panel;
   }
 
-  private static JComponent makeFooter(QuestionChooser chooser, SequencePlayer player,
+  private static JComponent makeFooter(QuestionChooser chooser, Player player,
       ScoreKeeper scoreKeeper) {
     Box footer = Box.createHorizontalBox();
 
@@ -163,7 +166,9 @@ class QuizPage {
     leftSide.add(makeScaleChooserWidget(chooser));
     leftSide.add(makeNoteCountWidget(chooser));
     leftSide.add(makeNoteDirectionWidget(chooser));
+    leftSide.add(makeDrillWidget(chooser));
     leftSide.add(makeSoundChooserWidget(player));
+    leftSide.add(makePhraseCountWidget(chooser));
     leftSide.setAlignmentX(Component.LEFT_ALIGNMENT);
     leftSide.setAlignmentY(Component.BOTTOM_ALIGNMENT);
     footer.add(leftSide);
@@ -174,10 +179,13 @@ class QuizPage {
   }
 
   private static JComponent makeScaleChooserWidget(final QuestionChooser chooser) {
-    final DefaultComboBoxModel model = new DefaultComboBoxModel(ScaleMenuItem.values());
-    model.setSelectedItem(ScaleMenuItem.find(Scale.DEFAULT));
+    List<ScaleCatalog.NamedScale> scales = ScaleCatalog.getMenuScales();
+    final DefaultComboBoxModel<ScaleCatalog.NamedScale> model =
+        new DefaultComboBoxModel<ScaleCatalog.NamedScale>(
+            scales.toArray(new ScaleCatalog.NamedScale[scales.size()]));
+    model.setSelectedItem(ScaleCatalog.findMenuScale(Scale.DEFAULT));
 
-    JComboBox combo = new JComboBox(model) {
+    JComboBox<ScaleCatalog.NamedScale> combo = new JComboBox<ScaleCatalog.NamedScale>(model) {
       @Override
       public Dimension getMaximumSize() {
         return getPreferredSize();
@@ -187,7 +195,7 @@ class QuizPage {
     combo.addActionListener(new SimpleAction("change scale") {
       @Override
       void act() throws UnavailableException {
-        chooser.setScale(((ScaleMenuItem)model.getSelectedItem()).getScale());  
+        chooser.setScale(((ScaleCatalog.NamedScale) model.getSelectedItem()).getScale());  
       }
     });
     
@@ -234,12 +242,67 @@ class QuizPage {
     return result;
   }
 
-  private static JComponent makeSoundChooserWidget(final SequencePlayer player) {
+  /**
+   * Creates menus for choosing an interval that every phrase must contain,
+   * and optionally where in the phrase it must be.
+   */
+  private static JComponent makeDrillWidget(final QuestionChooser chooser) {
+    final List<Interval> intervals = new ArrayList<Interval>();
+    final DefaultComboBoxModel<String> intervalModel = new DefaultComboBoxModel<String>();
+    intervalModel.addElement("Off");
+    for (Interval interval : Interval.range(Interval.UNISON, Interval.OCTAVE)) {
+      intervals.add(interval);
+      intervalModel.addElement(interval.getName());
+    }
+
+    final DefaultComboBoxModel<String> positionModel = new DefaultComboBoxModel<String>();
+    positionModel.addElement("anywhere");
+    for (int i = 1; i < QuestionChooser.MAX_NOTES_IN_PHRASE; i++) {
+      positionModel.addElement("at interval " + i);
+    }
+
+    SimpleAction update = new SimpleAction("change drill") {
+      @Override
+      void act() throws UnavailableException {
+        int choice = intervalModel.getIndexOf(intervalModel.getSelectedItem()) - 1;
+        int position = positionModel.getIndexOf(positionModel.getSelectedItem()) - 1;
+        PhraseConstraint constraint = PhraseConstraint.NONE;
+        if (choice >= 0 && position < 0) {
+          constraint = constraint.require(intervals.get(choice));
+        } else if (choice >= 0) {
+          constraint = constraint.require(intervals.get(choice), position);
+        }
+        chooser.setConstraint(constraint);
+      }
+    };
+
+    Box result = Box.createHorizontalBox();
+    result.add(new JLabel("Drill: "));
+    result.add(makeComboBox(intervalModel, update));
+    result.add(makeSpacer());
+    result.add(makeComboBox(positionModel, update));
+    result.setAlignmentX(Component.LEFT_ALIGNMENT);
+    return result;
+  }
+
+  private static JComboBox<String> makeComboBox(DefaultComboBoxModel<String> model,
+      SimpleAction action) {
+    JComboBox<String> combo = new JComboBox<String>(model) {
+      @Override
+      public Dimension getMaximumSize() {
+        return getPreferredSize();
+      }
+    };
+    combo.addActionListener(action);
+    return combo;
+  }
+
+  private static JComponent makeSoundChooserWidget(final Player player) {
 
-    final DefaultComboBoxModel model = new DefaultComboBoxModel(player.getSounds());
+    final DefaultComboBoxModel<Sound> model = new DefaultComboBoxModel<Sound>(player.getSounds());
     model.setSelectedItem(player.getDefaultSound());
 
-    JComboBox combo = new JComboBox(model) {
+    JComboBox<Sound> combo = new JComboBox<Sound>(model) {
       @Override
       public Dimension getMaximumSize() {
         return getPreferredSize();
@@ -260,6 +323,20 @@ class QuizPage {
     return result;
   }  
   
+  private static JComponent makePhraseCountWidget(final QuestionChooser chooser) {
+    final JLabel label = new JLabel();
+    Runnable update = new Runnable() {
+      public void run() {
+        label.setText(NumberFormat.getIntegerInstance().format(chooser.countPhrases()) +
+            " possible phrases");
+      }
+    };
+    update.run();
+    chooser.addSettingsChangeListener(update);
+    label.setAlignmentX(Component.LEFT_ALIGNMENT);
+    return label;
+  }
+
   private static JComponent makeScoreWidget(final ScoreKeeper scoreKeeper) {
     final JButton resetButton = new JButton(new SimpleAction("Reset") {
       @Override
@@ -309,42 +386,4 @@ class QuizPage {
       });
     }
   }
-
-  static enum ScaleMenuItem {
-    PENTATONIC("Pentatonic", Scale.MAJOR_PENTATONIC),
-    BLUES("Blues", Scale.BLUES),
-    MAJOR("Major / Natural Minor", Scale.MAJOR),
-    MINOR("Harmonic Minor", Scale.HARMONIC_MINOR),
-    CHROMATIC("Chromatic", Scale.CHROMATIC);
-  
-    private final String label;
-    private final Scale scale;
-  
-    ScaleMenuItem(String label, Scale scale) {
-      this.label = label;
-      this.scale = scale;
-    }
-  
-    String getLabel() {
-      return label;
-    }
-  
-    Scale getScale() {
-      return scale;
-    }
-
-    @Override
-    public String toString() {
-      return label;
-    }
-
-    static ScaleMenuItem find(Scale scale) {
-      for (ScaleMenuItem item : values()) {
-        if (item.scale.equals(scale)) {
-          return item;
-        }
-      }
-      return null;
-    }
-  }
 }
@@ -9,17 +9,22 @@ import java.util.List;
  */
 class Quizzer {
   private final QuestionChooser chooser;
-  private final SequencePlayer player;
+  private final Player player;
   private final ScoreKeeper scoreKeeper;
 
   private Question currentQuestion;
+  // chosen ahead of time so the player can prepare it; null if the settings changed.
+  // It's chosen before the current question is scored, but the only phrase whose
+  // score can change before then is the current one, which it never repeats, so
+  // it's the same question that would be chosen after scoring.
+  private Question nextQuestion;
   private int currentInterval;
   private final IntervalChoices choices;
   private final List<Interval> answers;
 
   private final List<Runnable> answerChosenListeners;
 
-  Quizzer(QuestionChooser chooser, IntervalChoices choices, SequencePlayer player,
+  Quizzer(QuestionChooser chooser, IntervalChoices choices, Player player,
       ScoreKeeper scoreKeeper) {
     this.chooser = chooser;
     this.choices = choices;
@@ -27,6 +32,11 @@ class Quizzer {
     this.player = player;
     this.answers = new ArrayList<Interval>();
     this.answerChosenListeners = new ArrayList<Runnable>();
+    chooser.addSettingsChangeListener(new Runnable() {
+      public void run() {
+        nextQuestion = null;
+      }
+    });
   }
 
   void addAnswerChosenListener(Runnable callback) {
@@ -39,11 +49,13 @@ class Quizzer {
    * Starts the next question. (If any question is in progress, skip it.)
    */
   void startQuestion() throws UnavailableException {
-    currentQuestion = chooser.chooseQuestion();
+    currentQuestion = nextQuestion != null ? nextQuestion : chooser.chooseQuestion();
     currentInterval = 0;
-    choices.reset(currentQuestion.getChoices());
+    choices.reset(currentQuestion.getChoices(currentInterval));
     answers.clear();
     playQuestion();
+    nextQuestion = chooser.chooseQuestionAfter(currentQuestion.getPhrase());
+    nextQuestion.prepare(player);
   }
 
   void playQuestion() throws UnavailableException {
@@ -68,7 +80,7 @@ class Quizzer {
         scoreKeeper.addResult(currentQuestion, answers);
         startQuestion();
       } else {
-        choices.reset(currentQuestion.getChoices());        
+        choices.reset(currentQuestion.getChoices(currentInterval));
       }
     } else {
       choices.removeChoice(candidate);
@@ -85,6 +97,10 @@ class Quizzer {
     return currentQuestion != null;
   }
 
+  Question getCurrentQuestion() {
+    return currentQuestion;
+  }
+
   private boolean hasPlayerAnsweredForThisInterval() {
     return answers.size() > currentInterval;
   }  
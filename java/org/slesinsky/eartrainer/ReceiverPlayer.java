@@ -0,0 +1,55 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Synthesizer;
+
+/**
+ * Plays phrases by sending midi messages straight to the synthesizer's receiver,
+ * scheduled by a {@link MidiScheduler}. This skips the sequencer's stop, set sequence,
+ * and start calls, which can take tens of milliseconds, so a phrase starts sooner and
+ * the previous phrase stops immediately.
+ */
+class ReceiverPlayer extends MidiPlayer {
+  private final MidiScheduler scheduler;
+
+  ReceiverPlayer() throws UnavailableException {
+    this(openDefaultSynthesizer());
+  }
+
+  /**
+   * Creates a player that plays on the given synthesizer, which must be open.
+   * (It's closed on shutdown.)
+   */
+  ReceiverPlayer(Synthesizer synth) throws UnavailableException {
+    this(synth, getDefaultSounds(synth));
+  }
+
+  /**
+   * Creates a player that plays the given sounds on the given synthesizer, which must
+   * be open. (It's closed on shutdown.)
+   */
+  ReceiverPlayer(Synthesizer synth, SoundCatalog sounds) throws UnavailableException {
+    super(synth, sounds);
+    try {
+      scheduler = new MidiScheduler(synth.getReceiver(), BEATS_PER_MINUTE);
+      preload(getDefaultSound());
+    } catch (MidiUnavailableException e) {
+      synth.close();
+      throw new UnavailableException(e);
+    }
+  }
+
+  @Override
+  void playSequence(Sequence sequence) {
+    scheduler.play(sequence);
+  }
+
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    scheduler.shutdown();
+    getSynthesizer().close();
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Arrays;
+
+/**
+ * Answers questions about the rotations (modes) of a 12-bit note set without
+ * allocating anything. For each of the 4096 possible sets, the table holds its
+ * canonical rotation (the smallest), its period (the number of distinct rotations),
+ * and a sorted list of the distinct rotations, which is shared by all the sets
+ * that are rotations of each other.
+ *
+ * <p>The table is built the first time it's used, which takes well under a millisecond.
+ */
+class RotationTable {
+  static final int OCTAVE = 12;
+  static final int SIZE = 1 << OCTAVE;
+
+  private static final int ALL_BITS = SIZE - 1;
+
+  private final short[] canonical = new short[SIZE];
+  private final byte[] periods = new byte[SIZE];
+  // index of the first distinct rotation in rotations
+  private final short[] firstRotation = new short[SIZE];
+  // the distinct rotations of each note set, in ascending order, grouped by canonical set
+  private final short[] rotations = new short[SIZE];
+
+  private RotationTable() {
+    int[] orbit = new int[OCTAVE];
+    int next = 0;
+    for (int bits = 0; bits < SIZE; bits++) {
+      if (periods[bits] != 0) {
+        continue; // already visited as a rotation of a smaller set
+      }
+      int period = 0;
+      int rotated = bits;
+      do {
+        orbit[period++] = rotated;
+        rotated = rotateLeft(rotated, 1);
+      } while (rotated != bits);
+      Arrays.sort(orbit, 0, period);
+      for (int i = 0; i < period; i++) {
+        int member = orbit[i];
+        rotations[next + i] = (short) member;
+        canonical[member] = (short) bits; // the first set visited is the smallest
+        periods[member] = (byte) period;
+        firstRotation[member] = (short) next;
+      }
+      next += period;
+    }
+  }
+
+  /**
+   * Returns the smallest of the rotations of a note set.
+   */
+  static int getCanonical(int bits) {
+    return get().canonical[check(bits)];
+  }
+
+  /**
+   * Returns the number of distinct rotations of a note set. (For example, 12 for the
+   * major scale, 2 for the whole tone scale, and 1 for the chromatic scale.)
+   */
+  static int getPeriod(int bits) {
+    return get().periods[check(bits)];
+  }
+
+  /**
+   * Returns one of the distinct rotations of a note set, in ascending order.
+   * @param index from 0 to getPeriod(bits) - 1
+   */
+  static int getRotation(int bits, int index) {
+    RotationTable table = get();
+    if (index < 0 || index >= table.periods[check(bits)]) {
+      throw new IndexOutOfBoundsException("no rotation " + index + " for " + bits);
+    }
+    return table.rotations[table.firstRotation[bits] + index];
+  }
+
+  /**
+   * Rotates a note set by the given number of half steps. (Bit 0 moves to bit halfSteps.)
+   */
+  static int rotate(int bits, int halfSteps) {
+    return rotateLeft(check(bits), Util.modulus(halfSteps, OCTAVE));
+  }
+
+  /**
+   * Returns true if some rotation of the subset fits within the scale.
+   */
+  static boolean containsAnywhere(int scaleBits, int subsetBits) {
+    RotationTable table = get();
+    check(scaleBits);
+    int first = table.firstRotation[check(subsetBits)];
+    int end = first + table.periods[subsetBits];
+    for (int i = first; i < end; i++) {
+      if ((table.rotations[i] & ~scaleBits) == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // === private methods ===
+
+  private static RotationTable get() {
+    return Holder.TABLE;
+  }
+
+  private static int check(int bits) {
+    if ((bits & ~ALL_BITS) != 0) {
+      throw new IllegalArgumentException("bad note set: " + Integer.toHexString(bits));
+    }
+    return bits;
+  }
+
+  private static int rotateLeft(int bits, int halfSteps) {
+    return (bits << halfSteps | bits >>> (OCTAVE - halfSteps)) & ALL_BITS;
+  }
+
+  // initialized on first use
+  private static class Holder {
+    static final RotationTable TABLE = new RotationTable();
+  }
+}
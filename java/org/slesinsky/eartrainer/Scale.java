@@ -2,7 +2,6 @@
 package org.slesinsky.eartrainer;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -27,7 +26,13 @@ class Scale implements Comparable<Scale> {
   // (0 is the tonic.  This is the reverse of the bitString.)
   private final int bits;
 
-  private Scale(int bits) {
+  /**
+   * Creates a scale from a bitmask. (Bit 0 is the tonic.)
+   */
+  Scale(int bits) {
+    if ((bits & ~ALL_BITS) != 0) {
+      throw new IllegalArgumentException("bad scale bits: " + Integer.toHexString(bits));
+    }
     this.bits = bits;
   }
 
@@ -56,6 +61,17 @@ class Scale implements Comparable<Scale> {
     this.bits = bits;
   }
 
+  /**
+   * Returns the notes in this scale as a bitmask. (Bit 0 is the tonic.)
+   */
+  int getBits() {
+    return bits;
+  }
+
+  int getNoteCount() {
+    return Integer.bitCount(bits);
+  }
+
   Note getTonic() {
     return new Note(0);
   }  
@@ -69,31 +85,31 @@ class Scale implements Comparable<Scale> {
   }
 
   Scale rotate(Interval interval) {
-    int halfSteps = normalize(interval.getHalfSteps());
-    return new Scale((bits << halfSteps | bits >>> (OCTAVE - halfSteps)) & ALL_BITS);  
+    return new Scale(RotationTable.rotate(bits, interval.getHalfSteps()));
   }
 
   Set<Scale> getRotations() {
     Set<Scale> result = new TreeSet<Scale>();
-    int bits = this.bits;
-    while (result.add(new Scale(bits))) {
-      bits = rotateLeft(bits);
-    } 
+    for (int i = 0; i < RotationTable.getPeriod(bits); i++) {
+      result.add(new Scale(RotationTable.getRotation(bits, i)));
+    }
     return result;
   }
 
+  /**
+   * Returns the rotation of this scale with the smallest bitmask, which is the same
+   * for all modes of a scale.
+   */
+  Scale getCanonicalRotation() {
+    return new Scale(RotationTable.getCanonical(bits));
+  }
+
   boolean containsAnywhere(Interval interval) {
-    Scale intervalScale = new Scale(0, Arrays.asList(0, interval.getHalfSteps()));
-    return containsAnywhere(intervalScale);
+    return ContainmentTable.containsAnywhere(bits, 1 | 1 << normalize(interval.getHalfSteps()));
   }  
   
   boolean containsAnywhere(Scale candidateSubset) {
-    for (Scale scale : candidateSubset.getRotations()) {
-      if (containsWithoutRotation(scale)) {
-        return true;
-      }
-    }
-    return false;
+    return ContainmentTable.containsAnywhere(bits, candidateSubset.bits);
   }  
   
   boolean containsWithoutRotation(Scale candidate) {
@@ -138,10 +154,6 @@ class Scale implements Comparable<Scale> {
     return Util.modulus(halfSteps, OCTAVE);
   }  
   
-  private static int rotateLeft(int bits) {
-    return (bits << 1 | bits >>> 11) & ALL_BITS;
-  }
-
   private boolean containsFromTonic(int halfSteps) {
     return (bits & (1 << normalize(halfSteps))) > 0;
   }
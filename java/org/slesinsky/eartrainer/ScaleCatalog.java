@@ -0,0 +1,236 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All 2048 scales that contain the tonic, with names for the well-known ones.
+ *
+ * <p>To find the named scales that a phrase fits in, the catalog keeps a bitmap of named
+ * scales for each possible note set. The bitmap for a note set includes every named scale
+ * that contains some transposition of it, so a lookup is a single array read no
+ * matter how many scales are named.
+ */
+class ScaleCatalog {
+  /** The number of scales containing the tonic. */
+  static final int SIZE = RotationTable.SIZE / 2;
+
+  private static final List<NamedScale> named = new ArrayList<NamedScale>();
+  private static final Map<Scale, NamedScale> byScale = new HashMap<Scale, NamedScale>();
+
+  static {
+    // the order here is the order of the scale menu
+    add("Major Pentatonic", 0, 2, 4, 7, 9);
+    add("Minor Pentatonic", 0, 3, 5, 7, 10);
+    add("Blues", 0, 2, 3, 5, 6, 7, 10);
+    add("Hexatonic Blues", 0, 3, 5, 6, 7, 10);
+    add("Major Blues", 0, 2, 3, 4, 7, 9);
+    add("Major", 0, 2, 4, 5, 7, 9, 11);
+    add("Dorian", 0, 2, 3, 5, 7, 9, 10);
+    add("Phrygian", 0, 1, 3, 5, 7, 8, 10);
+    add("Lydian", 0, 2, 4, 6, 7, 9, 11);
+    add("Mixolydian", 0, 2, 4, 5, 7, 9, 10);
+    add("Natural Minor", 0, 2, 3, 5, 7, 8, 10);
+    add("Locrian", 0, 1, 3, 5, 6, 8, 10);
+    add("Harmonic Minor", 0, 2, 3, 5, 7, 8, 11);
+    add("Phrygian Dominant", 0, 1, 4, 5, 7, 8, 10);
+    add("Melodic Minor", 0, 2, 3, 5, 7, 9, 11);
+    add("Lydian Dominant", 0, 2, 4, 6, 7, 9, 10);
+    add("Altered", 0, 1, 3, 4, 6, 8, 10);
+    add("Harmonic Major", 0, 2, 4, 5, 7, 8, 11);
+    add("Chromatic", 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+    add("Whole Tone", 0, 2, 4, 6, 8, 10);
+    add("Diminished (Whole-Half)", 0, 2, 3, 5, 6, 8, 9, 11);
+    add("Diminished (Half-Whole)", 0, 1, 3, 4, 6, 7, 9, 10);
+    add("Augmented", 0, 3, 4, 7, 8, 11);
+    add("Bebop Dominant", 0, 2, 4, 5, 7, 9, 10, 11);
+    add("Bebop Major", 0, 2, 4, 5, 7, 8, 9, 11);
+    add("Bebop Dorian", 0, 2, 3, 4, 5, 7, 9, 10);
+    add("Bebop Melodic Minor", 0, 2, 3, 5, 7, 8, 9, 11);
+    add("Messiaen Mode 3", 0, 2, 3, 4, 6, 7, 8, 10, 11);
+    add("Messiaen Mode 4", 0, 1, 2, 5, 6, 7, 8, 11);
+    add("Messiaen Mode 5", 0, 1, 5, 6, 7, 11);
+    add("Messiaen Mode 6", 0, 2, 4, 5, 6, 8, 10, 11);
+    add("Messiaen Mode 7", 0, 1, 2, 3, 5, 6, 7, 8, 9, 11);
+    add("Hungarian Minor", 0, 2, 3, 6, 7, 8, 11);
+    add("Double Harmonic", 0, 1, 4, 5, 7, 8, 11);
+    add("Neapolitan Major", 0, 1, 3, 5, 7, 9, 11);
+    add("Neapolitan Minor", 0, 1, 3, 5, 7, 8, 11);
+    add("Enigmatic", 0, 1, 4, 6, 8, 10, 11);
+    add("Persian", 0, 1, 4, 5, 6, 8, 11);
+    add("Prometheus", 0, 2, 4, 6, 9, 10);
+    add("Tritone", 0, 1, 4, 6, 7, 10);
+    add("Hirajoshi", 0, 2, 3, 7, 8);
+    add("In", 0, 1, 5, 7, 8);
+    add("Iwato", 0, 1, 5, 6, 10);
+  }
+
+  private static final int WORDS = (named.size() + 63) / 64;
+
+  // for each note set containing the tonic (indexed by bits >>> 1), the named scales
+  // that contain some transposition of it
+  private static final long[] supersets = new long[SIZE * WORDS];
+
+  static {
+    for (NamedScale scale : named) {
+      int bits = scale.getScale().getBits();
+      for (int i = 0; i < RotationTable.getPeriod(bits); i++) {
+        int rotated = RotationTable.getRotation(bits, i);
+        if ((rotated & 1) == 0) {
+          continue;
+        }
+        // visit every subset of the rotated scale that contains the tonic
+        for (int subset = rotated; ; subset = (subset - 1) & rotated) {
+          if ((subset & 1) != 0) {
+            supersets[(subset >>> 1) * WORDS + (scale.index >>> 6)] |= 1L << scale.index;
+          }
+          if (subset == 0) {
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  private ScaleCatalog() {}
+
+  /**
+   * Returns the scale at the given index, from 0 to {@link #SIZE} - 1.
+   * (Bit 0 of the scale is always set, and bits 1 to 11 are the index.)
+   */
+  static Scale getScale(int index) {
+    if (index < 0 || index >= SIZE) {
+      throw new IndexOutOfBoundsException("no scale " + index);
+    }
+    return new Scale(index << 1 | 1);
+  }
+
+  /**
+   * Returns the name of the given scale, or null if it doesn't have one.
+   */
+  static String getName(Scale scale) {
+    NamedScale result = byScale.get(scale);
+    return result == null ? null : result.getName();
+  }
+
+  /**
+   * Returns the scale with the given name, or null if there isn't one.
+   */
+  static NamedScale findNamed(String name) {
+    for (NamedScale scale : named) {
+      if (scale.getName().equals(name)) {
+        return scale;
+      }
+    }
+    return null;
+  }
+
+  static List<NamedScale> getNamedScales() {
+    return Collections.unmodifiableList(named);
+  }
+
+  /**
+   * Returns one named scale for each set of scales that are modes of each other,
+   * in menu order. (Phrases are generated in every transposition, so modes of the
+   * same scale generate the same phrases.)
+   */
+  static List<NamedScale> getMenuScales() {
+    List<NamedScale> result = new ArrayList<NamedScale>();
+    boolean[] seen = new boolean[RotationTable.SIZE];
+    for (NamedScale scale : named) {
+      int canonical = RotationTable.getCanonical(scale.getScale().getBits());
+      if (!seen[canonical]) {
+        seen[canonical] = true;
+        result.add(scale);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the named scale that's a mode of the given scale and comes first in the
+   * menu, or null if there isn't one.
+   */
+  static NamedScale findMenuScale(Scale scale) {
+    int canonical = RotationTable.getCanonical(scale.getBits());
+    for (NamedScale candidate : named) {
+      if (RotationTable.getCanonical(candidate.getScale().getBits()) == canonical) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the named scales that the phrase can be transposed into, in catalog order.
+   */
+  static List<NamedScale> findScalesContaining(Phrase phrase) {
+    return findScalesContaining(PhraseCode.getScaleBits(phrase.getCode()));
+  }
+
+  /**
+   * Returns the named scales that contain some transposition of the given notes.
+   * @param noteBits a 12-bit note set that includes bit 0
+   */
+  static List<NamedScale> findScalesContaining(int noteBits) {
+    if ((noteBits & 1) == 0 || noteBits >= RotationTable.SIZE) {
+      throw new IllegalArgumentException("bad note set: " + Integer.toHexString(noteBits));
+    }
+    List<NamedScale> result = new ArrayList<NamedScale>();
+    int start = (noteBits >>> 1) * WORDS;
+    for (int word = 0; word < WORDS; word++) {
+      long bits = supersets[start + word];
+      while (bits != 0) {
+        result.add(named.get(word * 64 + Long.numberOfTrailingZeros(bits)));
+        bits &= bits - 1;
+      }
+    }
+    return result;
+  }
+
+  // === private methods ===
+
+  private static void add(String name, int... notes) {
+    int bits = 0;
+    for (int note : notes) {
+      bits |= 1 << note;
+    }
+    NamedScale scale = new NamedScale(name, new Scale(bits), named.size());
+    if (byScale.put(scale.getScale(), scale) != null) {
+      throw new IllegalStateException("duplicate scale: " + name);
+    }
+    named.add(scale);
+  }
+
+  /**
+   * A scale with a well-known name.
+   */
+  static class NamedScale {
+    private final String name;
+    private final Scale scale;
+    private final int index;
+
+    private NamedScale(String name, Scale scale, int index) {
+      this.name = name;
+      this.scale = scale;
+      this.index = index;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    Scale getScale() {
+      return scale;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
@@ -4,16 +4,22 @@ package org.slesinsky.eartrainer;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Formatter;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 /**
  * Keeps track of which questions the user answered correctly.
+ *
+ * <p>Each phrase is given a small id the first time it's answered, so that sets of
+ * phrases can be stored as bitsets. Ids stay the same for the life of the score keeper
+ * (even after a reset), so that bitsets computed from them stay valid.
  */
 class ScoreKeeper {
+  // a phrase needs review until it's answered correctly this many times in a row
+  static final int REVIEW_STREAK = 2;
+
   private int numRight = 0;
   private int numWrong = 0;
   private Map<Phrase, PhraseRow> phraseScores = new TreeMap<Phrase, PhraseRow>();
@@ -21,11 +27,16 @@ class ScoreKeeper {
   // normalized
   private Phrase lastPhrase;
 
+  private final LongList phraseCodes = new LongList(); // indexed by id
+  private final Map<Long, Integer> phraseIds = new HashMap<Long, Integer>();
+  private final BitSet needsReview = new BitSet();
+
   void reset() {
     numRight = 0;
     numWrong = 0;
     phraseScores.clear();
     lastPhrase = null;
+    needsReview.clear();
     fireChange();
   }
 
@@ -47,6 +58,8 @@ class ScoreKeeper {
       row = phraseScores.get(key);
     }
     row.addResult(question.getStartNote(), isRight);
+    needsReview.set(getPhraseId(key.getCode()),
+        row.getNumTries() < REVIEW_STREAK || row.getNumWrong(REVIEW_STREAK) > 0);
     fireChange();
   }
 
@@ -54,15 +67,26 @@ class ScoreKeeper {
     return numRight + numWrong;
   }
 
-  // returns normalized phrases
-  Set<Phrase> getPhrasesWithWinningStreakLessThan(int range) {
-    Set<Phrase> result = new HashSet<Phrase>();
-    for (PhraseRow row : phraseScores.values()) {
-      if (row.getNumTries() < range || row.getNumWrong(range) > 0) {
-        result.add(row.getPhrase());  
-      }
-    }
-    return result;
+  /**
+   * Returns the ids of phrases that were recently answered wrong (or not answered
+   * correctly enough times yet). The caller may modify the returned bitset.
+   */
+  BitSet getPhrasesToReview() {
+    return (BitSet) needsReview.clone();
+  }
+
+  /**
+   * Returns the number of phrase ids assigned so far. (Ids go from 0 to this number - 1.)
+   */
+  int getPhraseIdCount() {
+    return phraseCodes.size();
+  }
+
+  /**
+   * Returns the code of a normalized phrase, given its id.
+   */
+  long getPhraseCode(int id) {
+    return phraseCodes.get(id);
   }
 
   // returns normalized phrase
@@ -91,6 +115,16 @@ class ScoreKeeper {
     this.scoreChangeListeners.add(listener);
   }
   
+  private int getPhraseId(long code) {
+    Integer id = phraseIds.get(code);
+    if (id == null) {
+      id = phraseCodes.size();
+      phraseCodes.add(code);
+      phraseIds.put(code, id);
+    }
+    return id;
+  }
+
   private void fireChange() {
     for (Runnable listener : scoreChangeListeners) {
       listener.run();
@@ -140,7 +174,7 @@ class ScoreKeeper {
       return result;
     }
     
-    public void play(SequencePlayer player) throws UnavailableException {
+    public void play(Player player) throws UnavailableException {
       if (startNotes.size() == 0) {
         player.play(phrase, 60);
         return;
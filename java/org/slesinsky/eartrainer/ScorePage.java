@@ -14,13 +14,18 @@ import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
 import java.awt.Component;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
  * Provides a method to construct the score page UI.
  */
 class ScorePage {
-  static JComponent create(ScoreKeeper scoreKeeper, SequencePlayer player) {
+  private static final int MAX_SCALES_SHOWN = 3;
+
+  static JComponent create(ScoreKeeper scoreKeeper, Player player) {
 
     PhraseTableModel model = new PhraseTableModel(scoreKeeper);
 
@@ -58,7 +63,7 @@ class ScorePage {
     }
 
     public int getColumnCount() {
-      return 3;
+      return 4;
     }
     
     @Override
@@ -80,6 +85,8 @@ class ScorePage {
           return "Right";
         case 2:
           return "Wrong";
+        case 3:
+          return "Scales";
         default:
           return "";
       }
@@ -103,12 +110,39 @@ class ScorePage {
           return row.getNumRight();
         case 2:
           return row.getNumWrong();
+        case 3:
+          return renderScales(row.getPhrase());
         default:
           return "";
       }
     }
   }
 
+  /**
+   * Lists the named scales that the phrase fits in, smallest first, since those
+   * say the most about the phrase.
+   */
+  static String renderScales(Phrase phrase) {
+    List<ScaleCatalog.NamedScale> scales =
+        new ArrayList<ScaleCatalog.NamedScale>(ScaleCatalog.findScalesContaining(phrase));
+    Collections.sort(scales, new Comparator<ScaleCatalog.NamedScale>() {
+      public int compare(ScaleCatalog.NamedScale a, ScaleCatalog.NamedScale b) {
+        return a.getScale().getNoteCount() - b.getScale().getNoteCount();
+      }
+    });
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < scales.size() && i < MAX_SCALES_SHOWN; i++) {
+      if (i > 0) {
+        result.append(", ");
+      }
+      result.append(scales.get(i).getName());
+    }
+    if (scales.size() > MAX_SCALES_SHOWN) {
+      result.append(", +").append(scales.size() - MAX_SCALES_SHOWN).append(" more");
+    }
+    return result.toString();
+  }
+
   private static class PhraseRenderer implements TableCellRenderer {
     private final PhraseCell cell = new PhraseCell();
     
@@ -123,7 +157,7 @@ class ScorePage {
     private final PhraseCell cell;
     private ScoreKeeper.PhraseRow currentRow;
 
-    PhraseEditor(SequencePlayer player) {
+    PhraseEditor(Player player) {
       cell = new PhraseCell();
       cell.setPlayer(player);
     }
@@ -154,7 +188,7 @@ class ScorePage {
       button.setText(renderPhrase(row.getPhrase()));
     }
 
-    public void setPlayer(final SequencePlayer player) {
+    public void setPlayer(final Player player) {
       button.setAction(new SimpleAction("Play") {
         @Override
         void act() throws UnavailableException {
@@ -14,9 +14,14 @@ class SequenceBuilder {
   static final int CHANNEL = 4;
   private static final int VELOCITY = 90;
 
+  // the pitch bend range set for tuned notes, in half steps
+  private static final int BEND_RANGE = 2;
+  private static final int BEND_CENTER = 8192;
+
   private final Sequence sequence;
   private Track track;
   private int currentBeat = 0;
+  private boolean bendRangeSet = false;
 
   SequenceBuilder() throws UnavailableException {
     try {
@@ -27,18 +32,35 @@ class SequenceBuilder {
     }
   }
 
+  /**
+   * Sets the instrument. Also undoes any pitch bend left over from a previous
+   * sequence on the same channel.
+   */
   final void addProgramChange(Sound sound) throws UnavailableException {
-    try {
-      ShortMessage msg = new ShortMessage();
-      msg.setMessage(ShortMessage.PROGRAM_CHANGE, CHANNEL, sound.program, 0);
-      track.add(new MidiEvent(msg, currentBeat));
-    } catch (InvalidMidiDataException e) {
-      throw new UnavailableException(e);
+    addMessage(ShortMessage.PROGRAM_CHANGE, sound.program, 0);
+    addPitchBend(BEND_CENTER);
+  }
+
+  /**
+   * Adds a note that may fall between the keys, played with pitch bend.
+   * @param pitch a fractional midi note number (see {@link Tuning#getPitch})
+   */
+  void addTunedNote(double pitch) throws UnavailableException {
+    if (!bendRangeSet) {
+      // registered parameter 0 is the pitch bend range
+      addMessage(ShortMessage.CONTROL_CHANGE, 101, 0);
+      addMessage(ShortMessage.CONTROL_CHANGE, 100, 0);
+      addMessage(ShortMessage.CONTROL_CHANGE, 6, BEND_RANGE);
+      addMessage(ShortMessage.CONTROL_CHANGE, 38, 0);
+      bendRangeSet = true;
     }
+    // rounding to the nearest key keeps the bend within half a step
+    int key = (int) Math.round(pitch);
+    addPitchBend(BEND_CENTER + (int) Math.round((pitch - key) / BEND_RANGE * BEND_CENTER));
+    addNote(key);
   }
-  
-  void addNote(int note) throws UnavailableException {
 
+  void addNote(int note) throws UnavailableException {
     ShortMessage noteOn;
     ShortMessage noteOff;
     try {
@@ -59,4 +81,20 @@ class SequenceBuilder {
   Sequence getSequence() {
     return sequence;
   }
+
+  // === private methods ===
+
+  private void addPitchBend(int value) throws UnavailableException {
+    addMessage(ShortMessage.PITCH_BEND, value & 0x7f, value >> 7);
+  }
+
+  private void addMessage(int command, int data1, int data2) throws UnavailableException {
+    try {
+      ShortMessage msg = new ShortMessage();
+      msg.setMessage(command, CHANNEL, data1, data2);
+      track.add(new MidiEvent(msg, currentBeat));
+    } catch (InvalidMidiDataException e) {
+      throw new UnavailableException(e);
+    }
+  }
 }
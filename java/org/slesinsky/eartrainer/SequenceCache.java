@@ -0,0 +1,116 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.Sequence;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently played midi sequences, so that replaying a phrase doesn't
+ * need to build its sequence again. Holds at most a fixed number of sequences;
+ * the least recently used are evicted first.
+ */
+class SequenceCache {
+  static final int DEFAULT_MAX_SEQUENCES = 64;
+
+  private final Map<Key, Sequence> entries;
+  private int hits = 0;
+  private int misses = 0;
+
+  SequenceCache(final int maxSequences) {
+    this.entries = new LinkedHashMap<Key, Sequence>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Sequence> eldest) {
+        return size() > maxSequences;
+      }
+    };
+  }
+
+  /**
+   * Returns the sequence for the given key, or null if it needs to be built.
+   */
+  Sequence get(Key key) {
+    Sequence result = entries.get(key);
+    if (result == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  void put(Key key, Sequence sequence) {
+    entries.put(key, sequence);
+  }
+
+  void clear() {
+    entries.clear();
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  int getHits() {
+    return hits;
+  }
+
+  int getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the fraction of lookups that found a sequence, or 0 if there were none.
+   */
+  double getHitRate() {
+    int total = hits + misses;
+    return total == 0 ? 0.0 : (double) hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return "SequenceCache(" + entries.size() + " sequences, " + hits + " hits, " + misses +
+        " misses)";
+  }
+
+  /**
+   * Everything that determines the contents of a sequence.
+   */
+  static class Key {
+    private final long phraseCode;
+    private final int startNote;
+    private final int bank;
+    private final int program;
+
+    Key(Phrase phrase, int startNote, Sound sound) {
+      this.phraseCode = phrase.getCode();
+      this.startNote = startNote;
+      this.bank = sound.bank;
+      this.program = sound.program;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (phraseCode ^ (phraseCode >>> 32));
+      result = 31 * result + startNote;
+      result = 31 * result + bank;
+      return 31 * result + program;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return phraseCode == other.phraseCode && startNote == other.startNote &&
+          bank == other.bank && program == other.program;
+    }
+
+    @Override
+    public String toString() {
+      return "Key(" + PhraseCode.toString(phraseCode) + ", " + startNote + ", " + bank + "." +
+          program + ")";
+    }
+  }
+}
@@ -1,108 +1,149 @@
 // Copyright 2010 Brian Slesinsky
 package org.slesinsky.eartrainer;
 
-import javax.sound.midi.Instrument;
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiSystem;
 import javax.sound.midi.MidiUnavailableException;
-import javax.sound.midi.Patch;
+import javax.sound.midi.Receiver;
 import javax.sound.midi.Sequence;
 import javax.sound.midi.Sequencer;
 import javax.sound.midi.Synthesizer;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * Plays a midi sequence.
+ * Plays midi sequences using a pair of sequencers connected to the same synthesizer.
+ * While one sequencer plays, a phrase passed to {@link #prepare} is loaded into
+ * the other, so that starting it only takes a stop and a start. Loading a sequence
+ * (setSequence and rewinding) is the slow part.
  */
-class SequencePlayer {
-  private static final int BEATS_PER_MINUTE = 80;
+class SequencePlayer extends MidiPlayer {
+  private final Sequencer[] sequencers = new Sequencer[2];
+  private final Sequence[] loaded = new Sequence[2];
+  private int current = 0;
 
-  private final Sequencer sequencer;
-  private final Synthesizer synth;
-  private Sound sound;
+  private int switchCount = 0;
+  private long totalSwitchNanos = 0;
 
   SequencePlayer() throws UnavailableException {
+    this(openDefaultSynthesizer());
+  }
+
+  /**
+   * Creates a player that plays on the given synthesizer, which must be open.
+   * (It's closed on shutdown.)
+   */
+  SequencePlayer(Synthesizer synth) throws UnavailableException {
+    this(synth, getDefaultSounds(synth));
+  }
+
+  /**
+   * Creates a player that plays the given sounds on the given synthesizer, which must
+   * be open. (It's closed on shutdown.)
+   */
+  SequencePlayer(Synthesizer synth, SoundCatalog sounds) throws UnavailableException {
+    super(synth, sounds);
     try {
-      sequencer = MidiSystem.getSequencer();
-      
-//      MidiDevice.Info device = sequencer.getDeviceInfo();
-//      System.out.println("Sequencer: " + device.getName());
-//      System.out.println("Version: " + device.getVersion());
-//      System.out.println("Vendor: " + device.getVendor());
-//      System.out.println("Description: " + device.getDescription());
-//      System.out.println();
-      
-      sequencer.setTempoInBPM(BEATS_PER_MINUTE);
-      sequencer.open();
-
-      synth = MidiSystem.getSynthesizer();
-      
-//      System.out.println("Instruments:");
-//      Instrument[] instruments = synth.getDefaultSoundbank().getInstruments();
-//      for (Instrument inst : instruments) {
-//        Patch patch = inst.getPatch();
-//        System.out.println(inst.getName() + ": " + patch.getBank() + "." + patch.getProgram());  
-//      } 
-//      System.out.println();
+      for (int i = 0; i < sequencers.length; i++) {
+        Sequencer sequencer = MidiSystem.getSequencer(false);
 
+//        MidiDevice.Info device = sequencer.getDeviceInfo();
+//        System.out.println("Sequencer: " + device.getName());
+//        System.out.println("Version: " + device.getVersion());
+//        System.out.println("Vendor: " + device.getVendor());
+//        System.out.println("Description: " + device.getDescription());
+//        System.out.println();
+
+        sequencer.setTempoInBPM(BEATS_PER_MINUTE);
+        sequencer.open();
+        Receiver receiver = getSynthesizer().getReceiver();
+        sequencer.getTransmitter().setReceiver(receiver);
+        sequencers[i] = sequencer;
+      }
+      preload(getDefaultSound());
     } catch (MidiUnavailableException e) {
+      shutdown();
       throw new UnavailableException(e);
     }
   }
-  
-  Sound[] getSounds() {
-    List<Sound> result = new ArrayList<Sound>();
-    for (Instrument instrument : synth.getDefaultSoundbank().getInstruments()) {
-      if (instrument.getPatch().getBank() == 0) {
-        result.add(new Sound(instrument));
-      }
+
+  /**
+   * Loads a phrase into the idle sequencer, unless it's already in one of them.
+   */
+  @Override
+  public void prepare(Phrase phrase, int startNote) throws UnavailableException {
+    Sequence sequence = getSequence(phrase, startNote);
+    if (loaded[current] != sequence && loaded[idle()] != sequence) {
+      load(idle(), sequence);
     }
-    return result.toArray(new Sound[result.size()]);
   }
 
-  Sound getDefaultSound() {
-    return new Sound(synth.getDefaultSoundbank().getInstrument(new Patch(0, 4)));
+  @Override
+  void playSequence(Sequence sequence) throws UnavailableException {
+    Profiler p = new Profiler();
+    if (loaded[current] == sequence) {
+      // playing it again
+      sequencers[current].stop();
+      sequencers[current].setTickPosition(0);
+      p.log("rewound sequencer");
+      sequencers[current].start();
+      p.log("restarted sequencer");
+      return;
+    }
+    int next = idle();
+    if (loaded[next] != sequence) {
+      load(next, sequence);
+      p.log("loaded sequence");
+    }
+    long start = System.nanoTime();
+    sequencers[current].stop();
+    sequencers[next].start();
+    totalSwitchNanos += System.nanoTime() - start;
+    switchCount++;
+    p.log("switched sequencers");
+    current = next;
   }
 
+  /**
+   * Returns the number of times playback switched from one sequencer to the other.
+   */
+  int getSwitchCount() {
+    return switchCount;
+  }
 
-  public void setSound(Sound sound) {
-    this.sound = sound;  
-  }  
-  
-  void play(Phrase phrase, int startNote) throws UnavailableException {
-
-    Sequence sequence = makeSequence(phrase, startNote);        
-    try {
-      Profiler p = new Profiler();
-      sequencer.stop();
-      p.log("stopped sequencer");
-      sequencer.setSequence(sequence);
-      p.log("set sequence");
-      sequencer.setMicrosecondPosition(0);
-      p.log("set position");
-      sequencer.start();
-      p.log("started sequencer");
-    } catch (InvalidMidiDataException e) {
-      throw new UnavailableException(e);
-    }
+  /**
+   * Returns the average time to stop one sequencer and start the other, in milliseconds.
+   */
+  double getAverageSwitchMillis() {
+    return switchCount == 0 ? 0.0 : totalSwitchNanos / 1e6 / switchCount;
   }
 
+  @Override
   public void shutdown() {
-    sequencer.stop();
-    sequencer.close(); // kills background thread
+    super.shutdown();
+    for (Sequencer sequencer : sequencers) {
+      if (sequencer != null) {
+        sequencer.stop();
+        sequencer.close(); // kills background thread
+      }
+    }
+    getSynthesizer().close();
   }
 
-  private Sequence makeSequence(Phrase phrase, int startNote) throws UnavailableException {
-    if (sound == null) {
-      sound = getDefaultSound();
-    }
+  // === private methods ===
 
-    SequenceBuilder builder = new SequenceBuilder();
-    builder.addProgramChange(sound);
-    for (int note : phrase.getNotes(startNote)) {
-      builder.addNote(note);
+  private int idle() {
+    return 1 - current;
+  }
+
+  private void load(int index, Sequence sequence) throws UnavailableException {
+    Sequencer sequencer = sequencers[index];
+    try {
+      sequencer.stop();
+      sequencer.setSequence(sequence);
+      sequencer.setTickPosition(0);
+      loaded[index] = sequence;
+    } catch (InvalidMidiDataException e) {
+      loaded[index] = null;
+      throw new UnavailableException(e);
     }
-    return builder.getSequence();
   }
 }
@@ -12,9 +12,31 @@ class Sound {
   final int program;
 
   public Sound(Instrument instrument) {
-    this.name = instrument.getName();
-    this.bank = instrument.getPatch().getBank();
-    this.program = instrument.getPatch().getProgram();
+    this(instrument.getName(), instrument.getPatch().getBank(),
+        instrument.getPatch().getProgram());
+  }
+
+  Sound(String name, int bank, int program) {
+    this.name = name;
+    this.bank = bank;
+    this.program = program;
+  }
+
+  /**
+   * Sounds are equal if they have the same patch.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof Sound)) {
+      return false;
+    }
+    Sound other = (Sound) obj;
+    return bank == other.bank && program == other.program;
+  }
+
+  @Override
+  public int hashCode() {
+    return bank * 128 + program;
   }
 
   @Override
@@ -0,0 +1,147 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.Instrument;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Soundbank;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sounds in a soundbank that can be used to play phrases (the instruments in
+ * bank 0), looked up once. The catalog doesn't change after it's created.
+ *
+ * <p>A catalog opened from a SoundFont file lists its sounds from the file's preset
+ * headers (see {@link SoundFontIndex}) and doesn't load the soundbank until the first
+ * instrument is needed. The JDK's loader reads a soundbank file's samples only when
+ * an instrument is loaded into a synthesizer, so only the sounds that are played
+ * take up memory.
+ */
+final class SoundCatalog {
+  private static final int DEFAULT_PROGRAM = 4; // electric piano
+
+  private final List<Sound> sounds;
+  private final Sound defaultSound;
+
+  // the file to load instruments from, or null if they were already loaded
+  private final File soundFont;
+  // guarded by this
+  private Map<Sound, Instrument> instruments;
+
+  private SoundCatalog(List<Sound> sounds, Map<Sound, Instrument> instruments,
+      File soundFont) {
+    if (sounds.isEmpty()) {
+      throw new IllegalArgumentException("no sounds");
+    }
+    this.sounds = Collections.unmodifiableList(sounds);
+    this.instruments = instruments;
+    this.soundFont = soundFont;
+    Sound preferred = find(0, DEFAULT_PROGRAM);
+    this.defaultSound = preferred != null ? preferred : sounds.get(0);
+  }
+
+  static SoundCatalog of(Soundbank soundbank) throws UnavailableException {
+    if (soundbank == null) {
+      throw new UnavailableException("no soundbank");
+    }
+    Map<Sound, Instrument> instruments = getInstruments(soundbank);
+    return new SoundCatalog(new ArrayList<Sound>(instruments.keySet()), instruments, null);
+  }
+
+  /**
+   * Lists the sounds in a SoundFont 2 file, without loading its samples.
+   */
+  static SoundCatalog open(File soundFont) throws UnavailableException {
+    SoundFontIndex index = SoundFontIndex.open(soundFont);
+    List<Sound> sounds = new ArrayList<Sound>();
+    for (Sound preset : index.getPresets()) {
+      if (preset.bank == 0 && !sounds.contains(preset)) {
+        sounds.add(preset);
+      }
+    }
+    // presets can be in any order in the file
+    Collections.sort(sounds, new Comparator<Sound>() {
+      public int compare(Sound a, Sound b) {
+        return a.program - b.program;
+      }
+    });
+    if (sounds.isEmpty()) {
+      throw new UnavailableException("no sounds in bank 0: " + soundFont);
+    }
+    return new SoundCatalog(sounds, null, soundFont);
+  }
+
+  List<Sound> getSounds() {
+    return sounds;
+  }
+
+  Sound getDefault() {
+    return defaultSound;
+  }
+
+  /**
+   * Returns the sound with the given patch, or null if there isn't one.
+   */
+  Sound find(int bank, int program) {
+    for (Sound sound : sounds) {
+      if (sound.bank == bank && sound.program == program) {
+        return sound;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the soundbank's instrument for a sound in this catalog, loading the
+   * soundbank if needed.
+   */
+  synchronized Instrument getInstrument(Sound sound) throws UnavailableException {
+    if (!sounds.contains(sound)) {
+      throw new IllegalArgumentException("not in catalog: " + sound);
+    }
+    if (instruments == null) {
+      instruments = getInstruments(loadSoundbank(soundFont));
+    }
+    Instrument result = instruments.get(sound);
+    if (result == null) {
+      throw new UnavailableException("no instrument for " + sound + " in " + soundFont);
+    }
+    return result;
+  }
+
+  // === private methods ===
+
+  private static Map<Sound, Instrument> getInstruments(Soundbank soundbank) {
+    Map<Sound, Instrument> result = new LinkedHashMap<Sound, Instrument>();
+    for (Instrument instrument : soundbank.getInstruments()) {
+      if (instrument.getPatch().getBank() == 0) {
+        Sound sound = new Sound(instrument);
+        if (!result.containsKey(sound)) {
+          result.put(sound, instrument);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static Soundbank loadSoundbank(File soundFont) throws UnavailableException {
+    Profiler p = new Profiler();
+    try {
+      // loading from a File (not a stream) leaves the samples on disk
+      Soundbank result = MidiSystem.getSoundbank(soundFont);
+      p.log("loaded soundbank " + soundFont);
+      return result;
+    } catch (InvalidMidiDataException e) {
+      throw new UnavailableException(e);
+    } catch (IOException e) {
+      throw new UnavailableException(e);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The preset list of a SoundFont 2 file, read without loading any samples.
+ *
+ * <p>The file is memory-mapped and only the chunk headers, the name, and the preset
+ * headers ("phdr") are read, so opening a SoundFont touches a few kilobytes no matter
+ * how much sample data it has. (Instruments are loaded later by {@link SoundCatalog}.)
+ */
+final class SoundFontIndex {
+  private static final int PRESET_HEADER_BYTES = 38;
+  private static final int PRESET_NAME_BYTES = 20;
+
+  private final String name;
+  private final List<Sound> presets;
+  private final long sampleBytes;
+
+  private SoundFontIndex(String name, List<Sound> presets, long sampleBytes) {
+    this.name = name;
+    this.presets = Collections.unmodifiableList(presets);
+    this.sampleBytes = sampleBytes;
+  }
+
+  static SoundFontIndex open(File file) throws UnavailableException {
+    try {
+      RandomAccessFile in = new RandomAccessFile(file, "r");
+      try {
+        FileChannel channel = in.getChannel();
+        if (channel.size() > Integer.MAX_VALUE) {
+          throw new UnavailableException("SoundFont is too large: " + file);
+        }
+        // the mapping stays valid after the file is closed
+        ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        return parse(data);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new UnavailableException(e);
+    }
+  }
+
+  /**
+   * Reads the index from the bytes of a SoundFont file.
+   */
+  static SoundFontIndex parse(ByteBuffer data) throws UnavailableException {
+    data.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      if (!readId(data).equals("RIFF")) {
+        throw new UnavailableException("not a RIFF file");
+      }
+      int end = readChunkEnd(data);
+      if (!readId(data).equals("sfbk")) {
+        throw new UnavailableException("not a SoundFont");
+      }
+      String name = null;
+      List<Sound> presets = null;
+      long sampleBytes = 0;
+      while (data.position() + 8 <= end) {
+        String id = readId(data);
+        int listEnd = readChunkEnd(data);
+        String type = id.equals("LIST") ? readId(data) : null;
+        while (type != null && data.position() + 8 <= listEnd) {
+          String chunkId = readId(data);
+          int chunkEnd = readChunkEnd(data);
+          if (type.equals("INFO") && chunkId.equals("INAM")) {
+            name = readString(data, chunkEnd - data.position());
+          } else if (type.equals("sdta") && chunkId.equals("smpl")) {
+            sampleBytes += chunkEnd - data.position();
+          } else if (type.equals("pdta") && chunkId.equals("phdr")) {
+            presets = readPresets(data, chunkEnd);
+          }
+          skipTo(data, chunkEnd);
+        }
+        skipTo(data, listEnd);
+      }
+      if (presets == null) {
+        throw new UnavailableException("SoundFont has no presets");
+      }
+      return new SoundFontIndex(name, presets, sampleBytes);
+    } catch (BufferUnderflowException e) {
+      throw new UnavailableException("truncated SoundFont");
+    }
+  }
+
+  /**
+   * Returns the SoundFont's name, or null if it doesn't have one.
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the presets in file order, as sounds with the presets' patches.
+   */
+  List<Sound> getPresets() {
+    return presets;
+  }
+
+  /**
+   * Returns the size of the sample data, which wasn't read.
+   */
+  long getSampleBytes() {
+    return sampleBytes;
+  }
+
+  // === private methods ===
+
+  private static List<Sound> readPresets(ByteBuffer data, int end) {
+    List<Sound> result = new ArrayList<Sound>();
+    // the last header marks the end of the list
+    int count = (end - data.position()) / PRESET_HEADER_BYTES - 1;
+    for (int i = 0; i < count; i++) {
+      int start = data.position();
+      String name = readString(data, PRESET_NAME_BYTES);
+      int program = data.getShort() & 0xffff;
+      int bank = data.getShort() & 0xffff;
+      result.add(new Sound(name, bank, program));
+      data.position(start + PRESET_HEADER_BYTES);
+    }
+    return result;
+  }
+
+  private static String readId(ByteBuffer data) {
+    return readString(data, 4);
+  }
+
+  /**
+   * Reads a chunk size and returns the position where the chunk's data ends.
+   */
+  private static int readChunkEnd(ByteBuffer data) throws UnavailableException {
+    long size = data.getInt() & 0xffffffffL;
+    long end = data.position() + size;
+    if (end > data.limit()) {
+      throw new UnavailableException("truncated SoundFont");
+    }
+    return (int) end;
+  }
+
+  /**
+   * Moves to the next chunk. (Chunks with an odd size are padded to an even size.)
+   */
+  private static void skipTo(ByteBuffer data, int chunkEnd) {
+    data.position(Math.min(chunkEnd + (chunkEnd & 1), data.limit()));
+  }
+
+  /**
+   * Reads a fixed-length ASCII field, which may end early with a zero byte.
+   */
+  private static String readString(ByteBuffer data, int length) {
+    StringBuilder result = new StringBuilder(length);
+    boolean ended = false;
+    for (int i = 0; i < length; i++) {
+      char c = (char) (data.get() & 0xff);
+      if (c == 0) {
+        ended = true;
+      } else if (!ended) {
+        result.append(c);
+      }
+    }
+    return result.toString().trim();
+  }
+}
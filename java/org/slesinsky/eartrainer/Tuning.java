@@ -0,0 +1,70 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+/**
+ * An equal division of the octave (EDO). The usual tuning is 12-EDO, where each
+ * step is a half step; 19, 24 and 31 divisions are popular for microtonal music.
+ */
+final class Tuning {
+  static final Tuning EDO_12 = new Tuning(12);
+  static final Tuning EDO_19 = new Tuning(19);
+  static final Tuning EDO_24 = new Tuning(24);
+  static final Tuning EDO_31 = new Tuning(31);
+
+  static final int MAX_DIVISIONS = 1200;
+  private static final int HALF_STEPS_PER_OCTAVE = 12;
+
+  private final int divisions;
+
+  Tuning(int divisions) {
+    if (divisions < 1 || divisions > MAX_DIVISIONS) {
+      throw new IllegalArgumentException("unsupported number of divisions: " + divisions);
+    }
+    this.divisions = divisions;
+  }
+
+  int getDivisions() {
+    return divisions;
+  }
+
+  boolean isTwelveTone() {
+    return divisions == HALF_STEPS_PER_OCTAVE;
+  }
+
+  /**
+   * Returns the size of an interval in cents. (An equal-tempered half step is 100 cents.)
+   */
+  double getCents(int steps) {
+    return steps * 1200.0 / divisions;
+  }
+
+  /**
+   * Returns the pitch that's the given number of steps from a midi note, as a
+   * fractional midi note number.
+   */
+  double getPitch(int startNote, int steps) {
+    return startNote + steps * (double) HALF_STEPS_PER_OCTAVE / divisions;
+  }
+
+  /**
+   * Returns the step within the octave, from 0 to getDivisions() - 1.
+   */
+  int normalize(int steps) {
+    return Util.modulus(steps, divisions);
+  }
+
+  @Override
+  public int hashCode() {
+    return divisions;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return (obj instanceof Tuning) && divisions == ((Tuning) obj).divisions;
+  }
+
+  @Override
+  public String toString() {
+    return divisions + "-EDO";
+  }
+}
@@ -3,8 +3,10 @@ package org.slesinsky.eartrainer;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 /**
  * Generic functions.
@@ -16,6 +18,41 @@ class Util {
     return answers.get(randomness.nextInt(answers.size()));
   }
 
+  /**
+   * Chooses up to count different indexes from 0 to size - 1 at random.
+   * (Uses Floyd's algorithm, so it only takes time proportional to count.)
+   */
+  static int[] chooseDistinctIndexes(Random randomness, int size, int count) {
+    count = Math.min(count, size);
+    Set<Integer> chosen = new HashSet<Integer>();
+    int[] result = new int[count];
+    for (int i = size - count, j = 0; i < size; i++, j++) {
+      int candidate = randomness.nextInt(i + 1);
+      if (!chosen.add(candidate)) {
+        chosen.add(i);
+        candidate = i;
+      }
+      result[j] = candidate;
+    }
+    return result;
+  }
+
+  /**
+   * Returns a random long between 0 (inclusive) and bound (exclusive).
+   */
+  static long nextLong(Random randomness, long bound) {
+    if (bound <= 0) {
+      throw new IllegalArgumentException("bound must be positive: " + bound);
+    }
+    while (true) {
+      long bits = randomness.nextLong() >>> 1;
+      long result = bits % bound;
+      if (bits - result + (bound - 1) >= 0) {
+        return result;
+      }
+    }
+  }
+
   static int modulus(int x, int n) {
     int result = x % n;
     return result < 0 ? result + n : result;
@@ -0,0 +1,160 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies that the async player runs requests in order and drops stale phrases.
+ */
+public class AsyncPlayerTest extends TestCase {
+  private static final Executor SAME_THREAD = new Executor() {
+    public void execute(Runnable task) {
+      task.run();
+    }
+  };
+
+  private FakePlayer fake;
+  private AsyncPlayer player;
+  private final List<String> events = new ArrayList<String>();
+
+  @Override
+  protected void setUp() throws Exception {
+    fake = new FakePlayer();
+    player = new AsyncPlayer(fake, SAME_THREAD);
+    player.addListener(new AsyncPlayer.Listener() {
+      public void played() {
+        addEvent("played");
+      }
+
+      public void failed(UnavailableException e) {
+        addEvent("failed: " + e.getMessage());
+      }
+    });
+  }
+
+  public void testRunsInOrder() throws Exception {
+    player.setSound(new Sound("Piano", 0, 0));
+    player.play(makePhrase(2), 60);
+    player.shutdown();
+    assertEquals("[sound Piano, play 2]", fake.calls.toString());
+    assertEquals("[played]", getEvents());
+    assertEquals(2, player.getSubmittedCount());
+    assertEquals(0, player.getQueueDepth());
+  }
+
+  public void testNewerPhraseReplacesWaitingOne() throws Exception {
+    fake.blockNextCall();
+    player.prepare(makePhrase(1), 60);
+    assertTrue(fake.started.await(5, TimeUnit.SECONDS));
+    // the audio thread is busy, so these wait
+    player.play(makePhrase(2), 60);
+    player.setSound(new Sound("Organ", 0, 19));
+    player.play(makePhrase(3), 60);
+    assertEquals(2, player.getQueueDepth());
+    fake.unblock();
+    player.shutdown();
+    assertEquals("[prepare 1, sound Organ, play 3]", fake.calls.toString());
+    assertEquals(1, player.getSupersededCount());
+    assertTrue(player.getMaxDispatchMillis() > 0);
+  }
+
+  public void testReportsFailure() throws Exception {
+    fake.failing = true;
+    player.play(makePhrase(2), 60);
+    player.shutdown();
+    assertEquals("[failed: no sound]", getEvents());
+    assertEquals(1, player.getFailedCount());
+  }
+
+  public void testKeepsRunningAfterUncheckedException() throws Exception {
+    fake.crashing = true;
+    player.prepare(makePhrase(1), 60);
+    player.play(makePhrase(2), 60);
+    player.shutdown();
+    assertEquals("[play 2]", fake.calls.toString());
+    assertEquals("[failed: java.lang.IllegalStateException: crashed, played]", getEvents());
+    assertEquals(1, player.getFailedCount());
+  }
+
+  // === end of tests ===
+
+  private synchronized void addEvent(String event) {
+    events.add(event);
+  }
+
+  private synchronized String getEvents() {
+    return events.toString();
+  }
+
+  private static Phrase makePhrase(int interval) {
+    return new Phrase(new int[] {interval});
+  }
+
+  /**
+   * Records calls, and can block to simulate a slow player.
+   */
+  private static class FakePlayer implements Player {
+    final List<String> calls = new ArrayList<String>();
+    final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean blockNext;
+    volatile boolean failing;
+    volatile boolean crashing;
+
+    void blockNextCall() {
+      blockNext = true;
+    }
+
+    void unblock() {
+      release.countDown();
+    }
+
+    public Sound[] getSounds() {
+      return new Sound[0];
+    }
+
+    public Sound getDefaultSound() {
+      return null;
+    }
+
+    public void setSound(Sound sound) {
+      call("sound " + sound);
+    }
+
+    public void play(Phrase phrase, int startNote) throws UnavailableException {
+      if (failing) {
+        throw new UnavailableException("no sound");
+      }
+      call("play " + phrase.getHalfSteps(0));
+    }
+
+    public void prepare(Phrase phrase, int startNote) {
+      if (crashing) {
+        throw new IllegalStateException("crashed");
+      }
+      call("prepare " + phrase.getHalfSteps(0));
+    }
+
+    public void shutdown() {
+    }
+
+    private void call(String description) {
+      calls.add(description);
+      started.countDown();
+      if (blockNext) {
+        blockNext = false;
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+  }
+}
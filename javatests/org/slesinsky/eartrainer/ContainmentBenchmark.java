@@ -0,0 +1,71 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import java.util.Random;
+
+/**
+ * Compares three ways of checking whether a note set fits somewhere in a scale:
+ * trying each rotation as a Scale object (the original approach), trying each
+ * rotation from the {@link RotationTable}, and reading the {@link ContainmentTable}.
+ * Usage: ContainmentBenchmark [queries]
+ */
+public class ContainmentBenchmark {
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) {
+    int queryCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    Random randomness = new Random(1);
+    int[] scales = new int[queryCount];
+    int[] subsets = new int[queryCount];
+    for (int i = 0; i < queryCount; i++) {
+      scales[i] = randomness.nextInt(RotationTable.SIZE);
+      subsets[i] = randomness.nextInt(RotationTable.SIZE) | 1;
+    }
+
+    Profiler p = new Profiler();
+    ContainmentTable.containsAnywhere(0, 0);
+    p.log("built containment table");
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      int objectCount = 0;
+      for (int i = 0; i < queryCount; i++) {
+        Scale scale = new Scale(scales[i]);
+        for (Scale rotation : new Scale(subsets[i]).getRotations()) {
+          if (scale.containsWithoutRotation(rotation)) {
+            objectCount++;
+            break;
+          }
+        }
+      }
+      long objectTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int rotationCount = 0;
+      for (int i = 0; i < queryCount; i++) {
+        if (RotationTable.containsAnywhere(scales[i], subsets[i])) {
+          rotationCount++;
+        }
+      }
+      long rotationTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int tableCount = 0;
+      for (int i = 0; i < queryCount; i++) {
+        if (ContainmentTable.containsAnywhere(scales[i], subsets[i])) {
+          tableCount++;
+        }
+      }
+      long tableTime = System.nanoTime() - start;
+
+      if (objectCount != rotationCount || rotationCount != tableCount) {
+        throw new AssertionError("results differ: " + objectCount + " " + rotationCount +
+            " " + tableCount);
+      }
+      System.out.printf("%d queries: Scale objects %.1f ns, rotation table %.1f ns, " +
+          "containment table %.1f ns per query%n", queryCount,
+          (double) objectTime / queryCount, (double) rotationTime / queryCount,
+          (double) tableTime / queryCount);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+/**
+ * Verifies the containment table against checking each rotation.
+ */
+public class ContainmentTableTest extends TestCase {
+
+  public void testMatchesRotationTable() throws Exception {
+    for (int scale = 0; scale < RotationTable.SIZE; scale++) {
+      for (int subset = 0; subset < RotationTable.SIZE; subset++) {
+        if (ContainmentTable.containsAnywhere(scale, subset) !=
+            RotationTable.containsAnywhere(scale, subset)) {
+          fail("wrong answer for scale " + scale + " and subset " + subset);
+        }
+      }
+    }
+  }
+
+  public void testScale() throws Exception {
+    assertTrue(Scale.MAJOR.containsAnywhere(Scale.MAJOR_PENTATONIC));
+    assertFalse(Scale.MAJOR_PENTATONIC.containsAnywhere(Scale.MAJOR));
+    assertTrue(Scale.BLUES.containsAnywhere(Interval.TRITONE));
+    assertFalse(Scale.MAJOR_PENTATONIC.containsAnywhere(Interval.TRITONE));
+    assertTrue(new Phrase(new int[] {1, -6}).canTransposeToScale(Scale.HARMONIC_MINOR));
+    assertFalse(new Phrase(new int[] {1, 1}).canTransposeToScale(Scale.MAJOR));
+  }
+}
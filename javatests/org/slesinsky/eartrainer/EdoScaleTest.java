@@ -0,0 +1,68 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Verifies scales in tunings other than 12-tone.
+ */
+public class EdoScaleTest extends TestCase {
+
+  public void testTuning() throws Exception {
+    assertEquals(100.0, Tuning.EDO_12.getCents(1), 1e-9);
+    assertEquals(50.0, Tuning.EDO_24.getCents(1), 1e-9);
+    assertEquals(72.5, Tuning.EDO_24.getPitch(60, 25), 1e-9);
+    assertEquals(72.0, Tuning.EDO_31.getPitch(60, 31), 1e-9);
+    assertEquals(30, Tuning.EDO_31.normalize(-1));
+    assertTrue(Tuning.EDO_12.isTwelveTone());
+    assertFalse(Tuning.EDO_19.isTwelveTone());
+  }
+
+  public void testSameAsScaleFor12Tone() throws Exception {
+    for (Scale scale : Arrays.asList(Scale.MAJOR, Scale.MAJOR_PENTATONIC, Scale.BLUES,
+        Scale.HARMONIC_MINOR)) {
+      EdoScale edo = EdoScale.fromScale(scale);
+      assertEquals(scale.getNoteCount(), edo.getNoteCount());
+      for (int i = 0; i < 12; i++) {
+        assertEquals(EdoScale.fromScale(scale.rotate(new Interval(i))), edo.rotate(i));
+      }
+      for (Scale other : Arrays.asList(Scale.MAJOR, Scale.MAJOR_PENTATONIC, Scale.BLUES)) {
+        assertEquals(scale.containsAnywhere(other),
+            edo.containsAnywhere(EdoScale.fromScale(other)));
+      }
+    }
+  }
+
+  public void testMicrotonal() throws Exception {
+    // the 19-EDO major scale
+    EdoScale major = EdoScale.of(Tuning.EDO_19, 0, 3, 6, 8, 11, 14, 17);
+    assertEquals(7, major.getNoteCount());
+    assertTrue(major.contains(19 + 3));
+    assertFalse(major.contains(1));
+    assertTrue(major.containsAnywhere(EdoScale.of(Tuning.EDO_19, 0, 2)));
+    assertFalse(major.containsAnywhere(EdoScale.of(Tuning.EDO_19, 0, 1)));
+    assertTrue(major.containsAnywhere(
+        EdoScale.fromPhrase(Tuning.EDO_19, new int[] {3, 3, -8})));
+    assertEquals("EdoScale(19-EDO: 0 2 5 8 11 13 16)", major.rotate(-6).toString());
+  }
+
+  public void testLargeTuning() throws Exception {
+    Tuning tuning = new Tuning(72);
+    EdoScale scale = EdoScale.of(tuning, 0, 12, 24, 30, 42, 54, 66);
+    assertTrue(Arrays.equals(new int[] {0, 12, 24, 30, 42, 54, 66}, scale.getSteps()));
+    assertEquals(EdoScale.of(tuning, 6, 18, 30, 36, 48, 60, 0), scale.rotate(6));
+    assertTrue(scale.containsAnywhere(EdoScale.of(tuning, 0, 6)));
+    assertFalse(scale.containsAnywhere(EdoScale.of(tuning, 0, 1)));
+  }
+
+  public void testDifferentTunings() throws Exception {
+    try {
+      EdoScale.of(Tuning.EDO_19, 0).containsAnywhere(EdoScale.of(Tuning.EDO_31, 0));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
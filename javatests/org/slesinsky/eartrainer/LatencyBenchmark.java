@@ -0,0 +1,287 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures how long it takes from asking a player to play a phrase until its first
+ * note can be heard, for each player implementation and a few instruments.
+ *
+ * <p>Runs without an audio device: the software synthesizer renders into memory
+ * (see {@link PcmRenderer#openStream}), read by a thread that keeps pace with the
+ * wall clock the way a sound card would. The time of a phrase's first note is when
+ * the first block containing a loud sample was rendered. Blocks are under a
+ * millisecond, but the synthesizer itself only handles incoming messages every
+ * few milliseconds, so the numbers include that.
+ *
+ * <p>The first play after choosing each instrument is reported separately, since it
+ * may have to wait for the instrument to load.
+ *
+ * <p>Usage: LatencyBenchmark [plays] [player...], where a player is "sequencer",
+ * "receiver", "async-sequencer" or "async-receiver". Needs
+ * --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED on Java 9 and later.
+ */
+public class LatencyBenchmark {
+  private static final AudioFormat FORMAT = PcmRenderer.FORMAT;
+  private static final int BLOCK_FRAMES = 32;
+  private static final int LOUD_SAMPLE = 300;
+  private static final long SILENCE_NANOS = 20000000L;
+  private static final long TIMEOUT_NANOS = 2000000000L;
+  private static final int WARMUP_PLAYS = 20;
+
+  // acoustic piano, electric piano (the default), organ, strings
+  private static final int[] PROGRAMS = {0, 4, 19, 48};
+  private static final String[] PLAYERS =
+      {"sequencer", "receiver", "async-sequencer", "async-receiver"};
+
+  private static final Executor SAME_THREAD = new Executor() {
+    public void execute(Runnable task) {
+      task.run();
+    }
+  };
+
+  public static void main(String[] args) throws Exception {
+    int plays = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    String[] players = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : PLAYERS;
+    for (String name : players) {
+      for (int program : PROGRAMS) {
+        run(name, program, plays);
+      }
+    }
+  }
+
+  private static void run(String playerName, int program, int plays) throws Exception {
+    Synthesizer synth = MidiSystem.getSynthesizer();
+    Monitor monitor = new Monitor(PcmRenderer.openStream(synth, FORMAT));
+    Thread monitorThread = new Thread(monitor, "LatencyBenchmark monitor");
+    monitorThread.setPriority(Thread.MAX_PRIORITY);
+    monitorThread.start();
+
+    Player player = makePlayer(playerName, synth);
+    Sound sound = findSound(player, program);
+    if (sound == null) {
+      System.out.println("no instrument for program " + program);
+    } else {
+      player.setSound(sound);
+      Receiver receiver = synth.getReceiver();
+      Random randomness = new Random(program);
+      List<Long> latencies = new ArrayList<Long>();
+      int missed = 0;
+      long first = -1;
+      for (int i = 0; i < WARMUP_PLAYS + plays; i++) {
+        Phrase phrase = new Phrase(new int[] {randomness.nextInt(25) - 12});
+        int startNote = 48 + randomness.nextInt(25);
+        monitor.waitForSilence();
+        long start = monitor.arm();
+        player.play(phrase, startNote);
+        long onset = monitor.awaitOnset();
+        silence(receiver);
+        if (i == 0 && onset >= 0) {
+          first = onset - start;
+        }
+        if (i < WARMUP_PLAYS) {
+          continue;
+        }
+        if (onset < 0) {
+          missed++;
+        } else {
+          latencies.add(onset - start);
+        }
+      }
+      report(playerName, sound, first, latencies, missed);
+    }
+
+    monitor.stop();
+    monitorThread.join();
+    player.shutdown();
+  }
+
+  private static Player makePlayer(String name, Synthesizer synth)
+      throws UnavailableException {
+    if (name.startsWith("async-")) {
+      return new AsyncPlayer(makePlayer(name.substring("async-".length()), synth),
+          SAME_THREAD);
+    } else if (name.equals("sequencer")) {
+      return new SequencePlayer(synth);
+    } else if (name.equals("receiver")) {
+      return new ReceiverPlayer(synth);
+    } else {
+      throw new IllegalArgumentException("unknown player: " + name);
+    }
+  }
+
+  private static Sound findSound(Player player, int program) {
+    for (Sound sound : player.getSounds()) {
+      if (sound.program == program) {
+        return sound;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Stops any sound right away, so that the next play starts from silence.
+   */
+  private static void silence(Receiver receiver) throws Exception {
+    ShortMessage msg = new ShortMessage();
+    msg.setMessage(ShortMessage.CONTROL_CHANGE, SequenceBuilder.CHANNEL, 120, 0);
+    receiver.send(msg, -1);
+  }
+
+  private static void report(String playerName, Sound sound, long first,
+      List<Long> latencies, int missed) {
+    long[] sorted = new long[latencies.size()];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = latencies.get(i);
+    }
+    Arrays.sort(sorted);
+    if (sorted.length == 0) {
+      System.out.printf("%-16s %-24s no sound in %d plays%n", playerName, sound, missed);
+      return;
+    }
+    System.out.printf("%-16s %-24s first %6.1f ms  p50 %6.1f ms  p99 %6.1f ms" +
+        "  max %6.1f ms  (%d plays, %d silent)%n", playerName, sound, first / 1e6,
+        getMillis(sorted, 0.50), getMillis(sorted, 0.99), sorted[sorted.length - 1] / 1e6,
+        sorted.length, missed);
+  }
+
+  private static double getMillis(long[] sorted, double percentile) {
+    int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  /**
+   * Reads the synthesizer's output in real time and notices when it stops being silent.
+   */
+  private static class Monitor implements Runnable {
+    private final AudioInputStream stream;
+    private final double nanosPerFrame = 1e9 / FORMAT.getFrameRate();
+
+    // guarded by this
+    private boolean stopped = false;
+    private boolean armed = false;
+    private long onsetTime = -1;
+    private long lastLoudTime;
+    private IOException error;
+
+    Monitor(AudioInputStream stream) {
+      this.stream = stream;
+      this.lastLoudTime = System.nanoTime();
+    }
+
+    public void run() {
+      byte[] block = new byte[BLOCK_FRAMES * FORMAT.getFrameSize()];
+      long start = System.nanoTime();
+      long frames = 0;
+      try {
+        while (!isStopped()) {
+          frames += BLOCK_FRAMES;
+          waitUntil(start + (long) (frames * nanosPerFrame));
+          readFully(block);
+          boolean loud = isLoud(block);
+          long now = System.nanoTime();
+          synchronized (this) {
+            if (loud) {
+              lastLoudTime = now;
+              if (armed && onsetTime < 0) {
+                onsetTime = now;
+              }
+            }
+            notifyAll();
+          }
+        }
+      } catch (IOException e) {
+        synchronized (this) {
+          error = e;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Starts watching for a note. Returns the current time.
+     */
+    synchronized long arm() {
+      armed = true;
+      onsetTime = -1;
+      return System.nanoTime();
+    }
+
+    /**
+     * Waits for the first loud block since the monitor was armed. Returns its time,
+     * or -1 if nothing was heard before the timeout.
+     */
+    synchronized long awaitOnset() throws InterruptedException, IOException {
+      long deadline = System.nanoTime() + TIMEOUT_NANOS;
+      while (onsetTime < 0 && System.nanoTime() < deadline) {
+        checkError();
+        wait(10);
+      }
+      armed = false;
+      return onsetTime;
+    }
+
+    synchronized void waitForSilence() throws InterruptedException, IOException {
+      while (System.nanoTime() - lastLoudTime < SILENCE_NANOS) {
+        checkError();
+        wait(10);
+      }
+    }
+
+    synchronized void stop() {
+      stopped = true;
+    }
+
+    private synchronized boolean isStopped() {
+      return stopped;
+    }
+
+    private void checkError() throws IOException {
+      if (error != null) {
+        throw error;
+      }
+    }
+
+    private void readFully(byte[] block) throws IOException {
+      int offset = 0;
+      while (offset < block.length) {
+        int count = stream.read(block, offset, block.length - offset);
+        if (count < 0) {
+          throw new IOException("synthesizer stream ended");
+        }
+        offset += count;
+      }
+    }
+
+    private static boolean isLoud(byte[] block) {
+      for (int i = 0; i < block.length; i += 2) {
+        int sample = (short) ((block[i] & 0xff) | (block[i + 1] << 8));
+        if (Math.abs(sample) > LOUD_SAMPLE) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static void waitUntil(long time) {
+      long delay;
+      while ((delay = time - System.nanoTime()) > 0) {
+        if (delay > 200000) {
+          LockSupport.parkNanos(delay - 100000);
+        }
+      }
+    }
+  }
+}
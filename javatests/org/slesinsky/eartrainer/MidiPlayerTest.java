@@ -0,0 +1,77 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Synthesizer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that the first phrase after a sound change is timed, even for players
+ * that don't play sequences directly, and that tuned phrases are played with pitch bend.
+ */
+public class MidiPlayerTest extends TestCase {
+
+  public void testFirstPlayIsTimed() throws Exception {
+    Synthesizer synth = MidiSystem.getSynthesizer(); // not opened
+    FakePlayer player = new FakePlayer(synth);
+    try {
+      assertEquals(-1.0, player.getFirstPlayMillis());
+      player.play(new Phrase(new int[] {2}), 60);
+      assertEquals(1, player.startCount);
+      assertTrue(player.getFirstPlayMillis() >= 0);
+
+      player.setSound(player.getSounds()[1]);
+      player.play(new Phrase(new int[] {3}), 60);
+      assertEquals(2, player.startCount);
+      assertTrue(player.getFirstPlayMillis() >= 0);
+      assertTrue("should play phrases through startPhrase", player.played == null);
+    } finally {
+      player.shutdown();
+    }
+  }
+
+  public void testPlayTuned() throws Exception {
+    FakePlayer player = new FakePlayer(MidiSystem.getSynthesizer());
+    try {
+      player.play(Tuning.EDO_24, 60, new int[] {1, 3, -5});
+      List<String> messages = SequenceBuilderTest.getMessages(player.played);
+      assertEquals(Arrays.asList(
+          "bend 8192", "on 60", "off 60",
+          "bend 6144", "on 61", "off 61",
+          "bend 8192", "on 62", "off 62",
+          "bend 6144", "on 60", "off 60"),
+          messages.subList(messages.indexOf("cc 38 0") + 1, messages.size()));
+    } finally {
+      player.shutdown();
+    }
+  }
+
+  // === end of tests ===
+
+  /**
+   * Starts phrases without building sequences, like {@link PcmPlayer}, and keeps
+   * any sequence it's asked to play.
+   */
+  private static class FakePlayer extends MidiPlayer {
+    int startCount = 0;
+    Sequence played;
+
+    FakePlayer(Synthesizer synth) throws UnavailableException {
+      super(synth, getDefaultSounds(synth));
+    }
+
+    @Override
+    void startPhrase(Phrase phrase, int startNote) {
+      startCount++;
+    }
+
+    @Override
+    void playSequence(Sequence sequence) {
+      played = sequence;
+    }
+  }
+}
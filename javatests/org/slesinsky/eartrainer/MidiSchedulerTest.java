@@ -0,0 +1,113 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifies that the scheduler sends messages in order and cancels them.
+ */
+public class MidiSchedulerTest extends TestCase {
+  private RecordingReceiver receiver;
+  private MidiScheduler scheduler;
+
+  @Override
+  protected void setUp() throws Exception {
+    receiver = new RecordingReceiver();
+    // one beat every 10 ms
+    scheduler = new MidiScheduler(receiver, 6000);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    scheduler.shutdown();
+  }
+
+  public void testSendsMessagesInOrder() throws Exception {
+    scheduler.play(makeSequence(60, 62, 64));
+    waitUntilDone();
+    assertEquals("program on 60 off 60 on 62 off 62 on 64 off 64", receiver.toString());
+  }
+
+  public void testNewSequenceCancelsOld() throws Exception {
+    scheduler = restart(new MidiScheduler(receiver, 60)); // one beat per second
+    scheduler.play(makeSequence(60, 62));
+    Thread.sleep(100);
+    scheduler.play(makeSequence(70));
+    Thread.sleep(100);
+    assertEquals("program on 60 all off program on 70", receiver.toString());
+    scheduler.cancel();
+    assertFalse(scheduler.isPlaying());
+  }
+
+  // === end of tests ===
+
+  private MidiScheduler restart(MidiScheduler replacement) {
+    scheduler.shutdown();
+    return replacement;
+  }
+
+  private void waitUntilDone() throws InterruptedException {
+    for (int i = 0; i < 200 && scheduler.isPlaying(); i++) {
+      Thread.sleep(10);
+    }
+    assertFalse(scheduler.isPlaying());
+  }
+
+  private Sequence makeSequence(int... notes) throws Exception {
+    SequenceBuilder builder = new SequenceBuilder();
+    builder.addProgramChange(new Sound("Piano", 0, 0));
+    for (int note : notes) {
+      builder.addNote(note);
+    }
+    return builder.getSequence();
+  }
+
+  /**
+   * Records a short description of each message.
+   */
+  private static class RecordingReceiver implements Receiver {
+    private final List<String> messages = new ArrayList<String>();
+
+    public synchronized void send(MidiMessage message, long timeStamp) {
+      ShortMessage msg = (ShortMessage) message;
+      switch (msg.getCommand()) {
+        case ShortMessage.NOTE_ON:
+          messages.add("on " + msg.getData1());
+          break;
+        case ShortMessage.NOTE_OFF:
+          messages.add("off " + msg.getData1());
+          break;
+        case ShortMessage.PROGRAM_CHANGE:
+          messages.add("program");
+          break;
+        case ShortMessage.CONTROL_CHANGE:
+          messages.add("all off");
+          break;
+        default:
+          break; // pitch bend
+      }
+    }
+
+    public void close() {
+    }
+
+    @Override
+    public synchronized String toString() {
+      StringBuilder result = new StringBuilder();
+      for (String message : messages) {
+        if (result.length() > 0) {
+          result.append(" ");
+        }
+        result.append(message);
+      }
+      return result.toString();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Verifies the compiled settings used to generate phrases.
+ */
+public class MoveTableTest extends TestCase {
+  private static final IntervalFilter FILTER =
+      new IntervalFilter(Interval.MAJOR_THIRD, Interval.PERFECT_FOURTH, Interval.PERFECT_FIFTH);
+
+  public void testGetMoves() throws Exception {
+    Scale scale = new Scale("100001010001");
+    checkMoves("[4, 5, 7]", MoveTable.compile(scale, FILTER, DirectionFilter.ASCENDING));
+    checkMoves("[-7, -5, -4]", MoveTable.compile(scale, FILTER, DirectionFilter.DESCENDING));
+    checkMoves("[-7, -5, -4, 4, 5, 7]",
+        MoveTable.compile(Scale.MAJOR, FILTER, DirectionFilter.BOTH));
+  }
+
+  public void testMove() throws Exception {
+    MoveTable table = MoveTable.compile(Scale.MAJOR, FILTER, DirectionFilter.BOTH);
+    assertEquals(Scale.MAJOR.getBits(), table.getScaleBits());
+    assertEquals(1 << 7, table.move(1, 7));
+    assertEquals(1 << 5, table.move(1, -7));
+    assertEquals(0, table.move(1, 1)); // not in the scale
+    assertEquals(1, table.move(1 << 11, 1)); // wraps around the octave
+    // each note in the set moves, and the ones outside the scale are dropped
+    assertEquals(1 << 4 | 1 << 11, table.move(1 | 1 << 2 | 1 << 7, 4));
+  }
+
+  // === end of tests ===
+
+  private void checkMoves(String expected, MoveTable table) {
+    assertEquals(expected, Arrays.toString(table.getMoves()));
+  }
+}
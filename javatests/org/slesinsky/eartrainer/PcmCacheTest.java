@@ -0,0 +1,46 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+/**
+ * Verifies that the PCM cache counts hits and evicts old audio.
+ */
+public class PcmCacheTest extends TestCase {
+  private static final Sound PIANO = new Sound("Piano", 0, 0);
+
+  public void testHitsAndMisses() throws Exception {
+    PcmCache cache = new PcmCache(100);
+    assertNull(cache.get(makeKey(2)));
+    cache.put(makeKey(2), new byte[30]);
+    assertEquals(30, cache.get(makeKey(2)).length);
+    assertTrue(cache.contains(makeKey(2)));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    PcmCache cache = new PcmCache(100);
+    cache.put(makeKey(2), new byte[40]);
+    cache.put(makeKey(3), new byte[40]);
+    cache.get(makeKey(2));
+    cache.put(makeKey(4), new byte[40]);
+    assertEquals(80, cache.getByteCount());
+    assertNotNull(cache.get(makeKey(2)));
+    assertNull(cache.get(makeKey(3)));
+    assertNotNull(cache.get(makeKey(4)));
+  }
+
+  public void testDoesNotStoreOversizedAudio() throws Exception {
+    PcmCache cache = new PcmCache(100);
+    cache.put(makeKey(2), new byte[101]);
+    assertEquals(0, cache.getByteCount());
+    assertNull(cache.get(makeKey(2)));
+  }
+
+  // === end of tests ===
+
+  private SequenceCache.Key makeKey(int interval) {
+    return new SequenceCache.Key(new Phrase(new int[] {interval}), 60, PIANO);
+  }
+}
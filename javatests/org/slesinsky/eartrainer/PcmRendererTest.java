@@ -0,0 +1,64 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+
+/**
+ * Verifies that phrases can be rendered without an audio device. (Rendering needs
+ * --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED on Java 9 and later;
+ * without it, the test is skipped.)
+ */
+public class PcmRendererTest extends TestCase {
+  private static final int BEATS_PER_MINUTE = 240; // a quarter second per note
+
+  public void testRender() throws Exception {
+    PcmRenderer renderer;
+    try {
+      renderer = new PcmRenderer(MidiSystem.getSynthesizer(), BEATS_PER_MINUTE);
+    } catch (UnavailableException e) {
+      System.err.println("skipped PcmRendererTest: " + e);
+      return;
+    }
+    try {
+      byte[] audio = renderer.render(makeSequence(60, 64, 67));
+      // three notes and the release
+      assertEquals(1.25, PcmRenderer.getSeconds(audio), 0.01);
+      assertTrue(getPeak(audio, 0.0, 0.7) > 1000);
+
+      byte[] silence = renderer.render(makeSequence());
+      assertEquals(0.5, PcmRenderer.getSeconds(silence), 0.01);
+      assertTrue("leftover sound", getPeak(silence, 0.1, 0.5) < 100);
+    } finally {
+      renderer.close();
+    }
+  }
+
+  // === end of tests ===
+
+  private Sequence makeSequence(int... notes) throws Exception {
+    SequenceBuilder builder = new SequenceBuilder();
+    builder.addProgramChange(new Sound("Piano", 0, 0));
+    for (int note : notes) {
+      builder.addNote(note);
+    }
+    return builder.getSequence();
+  }
+
+  /**
+   * Returns the largest sample between the given times.
+   */
+  private int getPeak(byte[] audio, double startSeconds, double endSeconds) {
+    int bytesPerSecond = (int) PcmRenderer.FORMAT.getFrameRate() * 2;
+    int start = (int) (startSeconds * bytesPerSecond) & ~1;
+    int end = Math.min(audio.length, (int) (endSeconds * bytesPerSecond) & ~1);
+    int result = 0;
+    for (int i = start; i < end; i += 2) {
+      int sample = (short) ((audio[i] & 0xff) | (audio[i + 1] << 8));
+      result = Math.max(result, Math.abs(sample));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,53 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+/**
+ * Verifies that the phrase cache counts hits and evicts old entries.
+ */
+public class PhraseCacheTest extends TestCase {
+
+  public void testHitsAndMisses() throws Exception {
+    PhraseCache cache = new PhraseCache(10);
+    assertNull(cache.get(makeKey(2)));
+    cache.put(makeKey(2), makePhrases(3));
+    assertEquals(3, cache.get(makeKey(2)).size());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    PhraseCache cache = new PhraseCache(10);
+    cache.put(makeKey(2), makePhrases(4));
+    cache.put(makeKey(3), makePhrases(4));
+    cache.get(makeKey(2));
+    cache.put(makeKey(4), makePhrases(4));
+    assertEquals(8, cache.getPhraseCount());
+    assertNotNull(cache.get(makeKey(2)));
+    assertNull(cache.get(makeKey(3)));
+    assertNotNull(cache.get(makeKey(4)));
+  }
+
+  public void testDoesNotStoreOversizedLists() throws Exception {
+    PhraseCache cache = new PhraseCache(10);
+    cache.put(makeKey(2), makePhrases(11));
+    assertEquals(0, cache.getPhraseCount());
+    assertNull(cache.get(makeKey(2)));
+  }
+
+  // === end of tests ===
+
+  private PhraseCache.Key makeKey(int noteCount) {
+    return new PhraseCache.Key(Scale.MAJOR, IntervalFilter.DEFAULT, DirectionFilter.BOTH,
+        noteCount);
+  }
+
+  private LongList makePhrases(int count) {
+    LongList result = new LongList();
+    for (int i = 0; i < count; i++) {
+      result.add(new Phrase(new int[] {i}).getCode());
+    }
+    return result;
+  }
+}
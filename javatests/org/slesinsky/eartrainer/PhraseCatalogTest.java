@@ -0,0 +1,54 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Verifies that phrase lists can be written to a catalog and read back.
+ */
+public class PhraseCatalogTest extends TestCase {
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    file = File.createTempFile("phrases", ".catalog");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+  }
+
+  public void testRoundTrip() throws Exception {
+    int count = PhraseCatalog.write(file, Arrays.asList(Scale.MAJOR, Scale.CHROMATIC),
+        PhraseCatalog.getCommonFilters(), 3);
+    PhraseCatalog catalog = PhraseCatalog.open(file);
+    assertEquals(count, catalog.getListCount());
+
+    checkFind(catalog, Scale.MAJOR, IntervalFilter.DEFAULT, DirectionFilter.BOTH, 3);
+    checkFind(catalog, Scale.CHROMATIC, IntervalFilter.DEFAULT.enable(Interval.TRITONE),
+        DirectionFilter.DESCENDING, 2);
+
+    assertNull(catalog.find(
+        new PhraseCache.Key(Scale.BLUES, IntervalFilter.DEFAULT, DirectionFilter.BOTH, 3)));
+    assertNull(catalog.find(
+        new PhraseCache.Key(Scale.MAJOR, IntervalFilter.DEFAULT, DirectionFilter.BOTH, 4)));
+  }
+
+  // === end of tests ===
+
+  private void checkFind(PhraseCatalog catalog, Scale scale, IntervalFilter filter,
+      DirectionFilter direction, int noteCount) {
+    LongSequence found = catalog.find(new PhraseCache.Key(scale, filter, direction, noteCount));
+    assertNotNull(found);
+    LongList expected = new PhraseSpace(scale, filter, direction, noteCount,
+        QuestionChooser.getMaxPhraseRange(filter, noteCount)).toList();
+    assertEquals(expected.size(), found.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), found.get(i));
+    }
+  }
+}
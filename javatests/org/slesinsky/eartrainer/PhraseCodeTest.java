@@ -0,0 +1,68 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+/**
+ * Verifies packed phrase codes and the primitive collections that hold them.
+ */
+public class PhraseCodeTest extends TestCase {
+
+  public void testRoundTrip() throws Exception {
+    checkRoundTrip();
+    checkRoundTrip(0);
+    checkRoundTrip(-12, 12, 5, -7);
+    checkRoundTrip(PhraseCode.MIN_HALF_STEPS, PhraseCode.MAX_HALF_STEPS);
+    checkRoundTrip(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+  }
+
+  public void testRejectsLongPhrases() throws Exception {
+    try {
+      PhraseCode.encode(new int[PhraseCode.MAX_INTERVALS + 1]);
+      fail("expected exception");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testOrderMatchesIntervals() throws Exception {
+    checkLessThan(new int[] {12}, new int[] {-12, -12});
+    checkLessThan(new int[] {-1, 5}, new int[] {0, -5});
+    checkLessThan(new int[] {3, -2, 4}, new int[] {3, -1, -12});
+  }
+
+  public void testOffsets() throws Exception {
+    long code = PhraseCode.encode(new int[] {5, -12, 2, 9});
+    assertEquals(-7, PhraseCode.minOffset(code));
+    assertEquals(5, PhraseCode.maxOffset(code));
+    assertEquals(12, new Phrase(code).getRange());
+  }
+
+  public void testLongHashSet() throws Exception {
+    LongHashSet set = new LongHashSet();
+    for (long i = 0; i < 1000; i++) {
+      assertTrue(set.add(i * 7919));
+    }
+    assertFalse(set.add(0));
+    assertFalse(set.add(7919 * 999));
+    assertTrue(set.contains(7919 * 500));
+    assertFalse(set.contains(7918));
+    assertEquals(1000, set.size());
+    assertEquals(1000, set.toList().size());
+  }
+
+  // === end of tests ===
+
+  private void checkRoundTrip(int... intervals) {
+    long code = PhraseCode.encode(intervals);
+    assertEquals(intervals.length, PhraseCode.length(code));
+    for (int i = 0; i < intervals.length; i++) {
+      assertEquals(intervals[i], PhraseCode.get(code, i));
+    }
+  }
+
+  private void checkLessThan(int[] smaller, int[] larger) {
+    assertTrue(PhraseCode.encode(smaller) < PhraseCode.encode(larger));
+    assertTrue(new Phrase(smaller).compareTo(new Phrase(larger)) < 0);
+  }
+}
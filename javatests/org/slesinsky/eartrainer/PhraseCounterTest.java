@@ -0,0 +1,66 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Verifies that phrases are counted and sampled without listing them.
+ */
+public class PhraseCounterTest extends TestCase {
+  private static final IntervalFilter FILTER = new IntervalFilter(Interval.MINOR_SECOND,
+      Interval.MAJOR_THIRD, Interval.PERFECT_FOURTH, Interval.PERFECT_FIFTH, Interval.OCTAVE);
+
+  public void testCountMatchesPhraseSpace() throws Exception {
+    checkCount(Scale.MAJOR_PENTATONIC, DirectionFilter.ASCENDING, 2, 12);
+    checkCount(Scale.MAJOR, DirectionFilter.BOTH, 4, 20);
+    checkCount(Scale.BLUES, DirectionFilter.DESCENDING, 5, 14);
+    checkCount(Scale.CHROMATIC, DirectionFilter.BOTH, 4, 38);
+    checkCount(Scale.HARMONIC_MINOR, DirectionFilter.BOTH, 6, 10);
+  }
+
+  public void testLongPhrases() throws Exception {
+    MoveTable table = MoveTable.compile(Scale.CHROMATIC, FILTER, DirectionFilter.BOTH);
+    PhraseCounter counter = new PhraseCounter(table, 12, 38);
+    assertTrue(counter.count() > 1000000000L);
+    Random randomness = new Random(1);
+    for (int i = 0; i < 100; i++) {
+      Phrase phrase = new Phrase(counter.choose(randomness));
+      assertEquals(11, phrase.getIntervalCount());
+      assertTrue(phrase.getRange() <= 38);
+      assertTrue(FILTER.allows(phrase));
+    }
+  }
+
+  public void testChoosesUniformly() throws Exception {
+    MoveTable table = MoveTable.compile(Scale.MAJOR, FILTER, DirectionFilter.BOTH);
+    PhraseCounter counter = new PhraseCounter(table, 3, 12);
+    LongList phrases = new PhraseSpace(table, 3, 12).toList();
+    int samplesPerPhrase = 200;
+
+    Map<Long, Integer> counts = new HashMap<Long, Integer>();
+    Random randomness = new Random(1);
+    for (int i = 0; i < phrases.size() * samplesPerPhrase; i++) {
+      long code = counter.choose(randomness);
+      Integer old = counts.get(code);
+      counts.put(code, old == null ? 1 : old + 1);
+    }
+    assertEquals(phrases.size(), counts.size());
+    for (int count : counts.values()) {
+      assertTrue("bad count: " + count, count > samplesPerPhrase / 2);
+      assertTrue("bad count: " + count, count < samplesPerPhrase * 2);
+    }
+  }
+
+  // === end of tests ===
+
+  private void checkCount(Scale scale, DirectionFilter direction, int noteCount, int maxRange) {
+    MoveTable table = MoveTable.compile(scale, FILTER, direction);
+    long expected = new PhraseSpace(table, noteCount, maxRange).stream().count();
+    assertTrue(expected > 0);
+    assertEquals(expected, new PhraseCounter(table, noteCount, maxRange).count());
+  }
+}
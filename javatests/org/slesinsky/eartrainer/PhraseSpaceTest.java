@@ -0,0 +1,112 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.TreeSet;
+
+/**
+ * Verifies that a phrase space contains each allowed phrase exactly once.
+ */
+public class PhraseSpaceTest extends TestCase {
+  private static final IntervalFilter FILTER =
+      new IntervalFilter(Interval.MAJOR_THIRD, Interval.PERFECT_FOURTH, Interval.PERFECT_FIFTH);
+
+  public void testMatchesBruteForce() throws Exception {
+    checkBruteForce(Scale.MAJOR_PENTATONIC, DirectionFilter.ASCENDING, 2, 12);
+    checkBruteForce(Scale.MAJOR_PENTATONIC, DirectionFilter.BOTH, 3, 10);
+    checkBruteForce(Scale.MAJOR, DirectionFilter.DESCENDING, 4, 20);
+    checkBruteForce(Scale.BLUES, DirectionFilter.BOTH, 4, 9);
+    checkBruteForce(Scale.CHROMATIC, DirectionFilter.BOTH, 3, 8);
+  }
+
+  public void testParallelMatchesSequential() throws Exception {
+    IntervalFilter all = new IntervalFilter();
+    for (Interval interval : Interval.range(Interval.UNISON, Interval.OCTAVE)) {
+      all = all.enable(interval);
+    }
+    PhraseSpace space = new PhraseSpace(Scale.HARMONIC_MINOR, all, DirectionFilter.BOTH, 4, 24);
+
+    long[] sequential = space.stream().toArray();
+    long[] parallel = space.parallelStream().toArray();
+    assertTrue(Arrays.equals(sequential, parallel));
+    assertEquals(sequential.length, space.parallelStream().distinct().count());
+
+    // one at a time, using tryAdvance
+    PrimitiveIterator.OfLong it = Spliterators.iterator(space.spliterator());
+    for (long code : sequential) {
+      assertEquals(code, it.nextLong());
+    }
+    assertFalse(it.hasNext());
+  }
+
+  public void testConstraints() throws Exception {
+    PhraseConstraint third = PhraseConstraint.NONE.require(Interval.MAJOR_THIRD);
+    checkConstraint(Scale.MAJOR, third);
+    checkConstraint(Scale.MAJOR, third.require(Interval.PERFECT_FIFTH));
+    checkConstraint(Scale.CHROMATIC, PhraseConstraint.NONE.require(Interval.PERFECT_FOURTH, 1));
+    checkConstraint(Scale.BLUES, third.require(Interval.PERFECT_FOURTH, 2));
+  }
+
+  // === end of tests ===
+
+  private void checkConstraint(Scale scale, PhraseConstraint constraint) {
+    MoveTable table = MoveTable.compile(scale, FILTER, DirectionFilter.BOTH);
+    for (int noteCount = 2; noteCount <= 5; noteCount++) {
+      LongList all = new PhraseSpace(table, noteCount, 20).toList();
+      Set<Long> expected = new TreeSet<Long>();
+      for (int i = 0; i < all.size(); i++) {
+        if (constraint.allowsPhrase(all.get(i))) {
+          expected.add(all.get(i));
+        }
+      }
+      Set<Long> actual = new TreeSet<Long>();
+      for (long code : new PhraseSpace(table, noteCount, 20, constraint).stream().toArray()) {
+        actual.add(code);
+      }
+      assertEquals(expected, actual);
+      assertEquals(expected.size(), new PhraseCounter(table, noteCount, 20, constraint).count());
+    }
+  }
+
+  private void checkBruteForce(Scale scale, DirectionFilter direction, int noteCount,
+      int maxRange) {
+    PhraseSpace space = new PhraseSpace(scale, FILTER, direction, noteCount, maxRange);
+    LongList codes = space.toList();
+    Set<Phrase> actual = new TreeSet<Phrase>();
+    for (int i = 0; i < codes.size(); i++) {
+      actual.add(new Phrase(codes.get(i)));
+    }
+    assertEquals("duplicate phrases", codes.size(), actual.size());
+
+    // try every sequence of moves from every starting note
+    Set<Phrase> expected = new TreeSet<Phrase>();
+    int[] moves = MoveTable.compile(scale, FILTER, direction).getMoves();
+    int[] path = new int[noteCount - 1];
+    int sequences = (int) Math.pow(moves.length, path.length);
+    for (int start = 0; start < 12; start++) {
+      for (int i = 0; i < sequences; i++) {
+        int min = 0;
+        int max = 0;
+        int offset = 0;
+        boolean ok = scale.getTonic().add(new Interval(start)).inScale();
+        for (int j = 0, rest = i; j < path.length; j++, rest /= moves.length) {
+          path[j] = moves[rest % moves.length];
+          offset += path[j];
+          min = Math.min(min, offset);
+          max = Math.max(max, offset);
+          ok &= scale.getTonic().add(new Interval(start + offset)).inScale();
+        }
+        if (ok && max - min <= maxRange) {
+          expected.add(new Phrase(path));
+        }
+      }
+    }
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, actual);
+  }
+}
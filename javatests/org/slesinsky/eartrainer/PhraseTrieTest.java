@@ -0,0 +1,72 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Verifies that a phrase trie allows exactly the answers that lead to a phrase.
+ */
+public class PhraseTrieTest extends TestCase {
+
+  public void testEmpty() throws Exception {
+    PhraseTrie trie = PhraseTrie.build(new LongList());
+    assertEquals(0, trie.getChoiceBits(PhraseTrie.ROOT));
+    assertEquals(-1, trie.getChild(PhraseTrie.ROOT, 5));
+  }
+
+  public void testMatchesBruteForce() throws Exception {
+    IntervalFilter filter = new IntervalFilter(Interval.MINOR_SECOND, Interval.MAJOR_THIRD,
+        Interval.PERFECT_FIFTH, Interval.OCTAVE);
+    checkBruteForce(new PhraseSpace(Scale.MAJOR, filter, DirectionFilter.BOTH, 2, 12).toList());
+    checkBruteForce(new PhraseSpace(Scale.MAJOR, filter, DirectionFilter.BOTH, 4, 20).toList());
+    checkBruteForce(
+        new PhraseSpace(Scale.BLUES, filter, DirectionFilter.DESCENDING, 5, 24).toList());
+  }
+
+  public void testFind() throws Exception {
+    LongList phrases = new LongList();
+    phrases.add(PhraseCode.encode(new int[] {2, -3}));
+    phrases.add(PhraseCode.encode(new int[] {-2, 5}));
+    PhraseTrie trie = PhraseTrie.build(phrases);
+    assertEquals(1 << 2, trie.getChoiceBits(PhraseTrie.ROOT));
+    int node = trie.find(PhraseCode.encode(new int[] {-2, 3}), 1);
+    assertEquals(1 << 3 | 1 << 5, trie.getChoiceBits(node));
+    assertEquals(-1, trie.find(PhraseCode.encode(new int[] {3, 3}), 1));
+    assertEquals(4, trie.getNodeCount());
+  }
+
+  // === end of tests ===
+
+  private void checkBruteForce(LongList phrases) {
+    PhraseTrie trie = PhraseTrie.build(phrases);
+    int length = PhraseCode.length(phrases.get(0));
+
+    // for each ascending prefix, the answers that may come next
+    Map<String, Integer> expected = new HashMap<String, Integer>();
+    for (int i = 0; i < phrases.size(); i++) {
+      long phrase = phrases.get(i);
+      StringBuilder prefix = new StringBuilder();
+      for (int position = 0; position < length; position++) {
+        int next = Math.abs(PhraseCode.get(phrase, position));
+        Integer bits = expected.get(prefix.toString());
+        expected.put(prefix.toString(), (bits == null ? 0 : bits) | 1 << next);
+        prefix.append(next).append(" ");
+      }
+    }
+
+    for (int i = 0; i < phrases.size(); i++) {
+      long phrase = phrases.get(i);
+      StringBuilder prefix = new StringBuilder();
+      for (int position = 0; position < length; position++) {
+        int node = trie.find(phrase, position);
+        assertTrue(node >= 0);
+        assertEquals(expected.get(prefix.toString()).intValue(), trie.getChoiceBits(node));
+        prefix.append(Math.abs(PhraseCode.get(phrase, position))).append(" ");
+      }
+      assertEquals(0, trie.getChoiceBits(trie.find(phrase, length)));
+    }
+  }
+}
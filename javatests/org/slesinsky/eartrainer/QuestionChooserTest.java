@@ -0,0 +1,180 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Verifies that batches of questions are distinct and evenly spread.
+ */
+public class QuestionChooserTest extends TestCase {
+  private QuestionChooser chooser;
+
+  @Override
+  protected void setUp() throws Exception {
+    chooser = new QuestionChooser(new Random(1), new ScoreKeeper());
+  }
+
+  public void testChooseQuestions() throws Exception {
+    chooser.setScale(Scale.CHROMATIC);
+    chooser.setIntervalAllowed(Interval.MINOR_SECOND, true);
+    chooser.setIntervalAllowed(Interval.TRITONE, true);
+    chooser.setNoteCount(3);
+    chooser.setDirectionFilter(DirectionFilter.BOTH);
+
+    List<Question> questions = chooser.chooseQuestions(24);
+    assertEquals(24, questions.size());
+
+    Set<Phrase> phrases = new HashSet<Phrase>();
+    int[] intervalUses = new int[13];
+    int[] startNoteUses = new int[12];
+    for (Question question : questions) {
+      assertTrue(phrases.add(question.getPhrase()));
+      for (Interval interval : question.getPhrase().getIntervals()) {
+        intervalUses[interval.toAscending().getHalfSteps()]++;
+      }
+      startNoteUses[question.getStartNote() % 12]++;
+    }
+    for (Interval interval : new Interval[] {Interval.MINOR_SECOND, Interval.TRITONE,
+        Interval.PERFECT_FOURTH, Interval.PERFECT_FIFTH}) {
+      assertTrue("not covered: " + interval, intervalUses[interval.getHalfSteps()] >= 6);
+    }
+    for (int uses : startNoteUses) {
+      assertEquals(2, uses);
+    }
+  }
+
+  public void testFewerPhrasesThanRequested() throws Exception {
+    chooser.setDirectionFilter(DirectionFilter.ASCENDING);
+    List<Question> questions = chooser.chooseQuestions(10);
+    assertEquals(2, questions.size());
+    assertFalse(questions.get(0).getPhrase().equals(questions.get(1).getPhrase()));
+  }
+
+  public void testSampledPhrases() throws Exception {
+    chooser.setNoteCount(QuestionChooser.MAX_NOTES_IN_PHRASE);
+    chooser.setScale(Scale.CHROMATIC);
+    chooser.setIntervalAllowed(Interval.MINOR_SECOND, true);
+    List<Question> questions = chooser.chooseQuestions(50);
+    assertEquals(50, questions.size());
+  }
+
+  public void testUpdatePhrasesMatchesRegeneration() throws Exception {
+    chooser.setScale(Scale.CHROMATIC);
+    chooser.setNoteCount(4);
+    chooser.setDirectionFilter(DirectionFilter.BOTH);
+    IntervalFilter filter = IntervalFilter.DEFAULT;
+    Interval[] toggles = {Interval.MINOR_THIRD, Interval.MAJOR_SECOND, Interval.TRITONE,
+        Interval.MINOR_THIRD, Interval.MINOR_SECOND, Interval.TRITONE, Interval.MAJOR_SECOND};
+    int updates = 0;
+    for (Interval toggle : toggles) {
+      chooser.getPhrases(); // caches the phrases to update from
+      boolean enable = !filter.allows(toggle);
+      int oldRange = QuestionChooser.getMaxPhraseRange(filter, 4);
+      filter = enable ? filter.enable(toggle) : filter.disable(toggle);
+      if (QuestionChooser.getMaxPhraseRange(filter, 4) <= oldRange) {
+        updates++;
+      }
+      chooser.setIntervalAllowed(toggle, enable);
+
+      QuestionChooser fresh = new QuestionChooser(new Random(1), new ScoreKeeper());
+      fresh.setScale(Scale.CHROMATIC);
+      fresh.setNoteCount(4);
+      fresh.setDirectionFilter(DirectionFilter.BOTH);
+      for (int halfSteps = 1; halfSteps <= 12; halfSteps++) {
+        Interval interval = new Interval(halfSteps);
+        fresh.setIntervalAllowed(interval, filter.allows(interval));
+      }
+      assertEquals("after toggling " + toggle, sorted(fresh.getPhrases()),
+          sorted(chooser.getPhrases()));
+    }
+    // most toggles should take the incremental path
+    assertTrue("updates: " + updates, updates >= 4);
+  }
+
+  public void testUpdateCrossingListLimit() throws Exception {
+    chooser.setScale(Scale.CHROMATIC);
+    chooser.setNoteCount(9);
+    chooser.setDirectionFilter(DirectionFilter.BOTH);
+    chooser.setIntervalAllowed(Interval.MINOR_SECOND, true);
+    chooser.setIntervalAllowed(Interval.MINOR_THIRD, true);
+    chooser.setIntervalAllowed(Interval.PERFECT_FOURTH, false);
+    chooser.setIntervalAllowed(Interval.PERFECT_FIFTH, false);
+    int listed = chooser.getPhrases().size();
+    assertTrue(listed < QuestionChooser.MAX_LISTED_PHRASES);
+    PhraseCache cache = chooser.getPhraseCache();
+    assertEquals(listed, cache.getPhraseCount());
+
+    // the new interval allows too many phrases to list, so only the old list is kept
+    chooser.setIntervalAllowed(Interval.MAJOR_SECOND, true);
+    assertTrue(chooser.countPhrases() > QuestionChooser.MAX_LISTED_PHRASES);
+    assertEquals(listed, cache.getPhraseCount());
+    assertEquals(10, chooser.chooseQuestions(10).size());
+    assertEquals(listed, cache.getPhraseCount());
+
+    // going back uses the cached list
+    chooser.setIntervalAllowed(Interval.MAJOR_SECOND, false);
+    int hits = cache.getHits();
+    assertEquals(listed, chooser.getPhrases().size());
+    assertEquals(hits + 1, cache.getHits());
+  }
+
+  public void testFilterPhrasesMatchesSinglePhraseFilters() throws Exception {
+    IntervalFilter filter = new IntervalFilter(Interval.MINOR_SECOND, Interval.MAJOR_THIRD,
+        Interval.PERFECT_FOURTH, Interval.PERFECT_FIFTH);
+    LongList all = new PhraseSpace(Scale.CHROMATIC, filter, DirectionFilter.BOTH, 4, 20).toList();
+    IntervalFilter narrower = filter.disable(Interval.MINOR_SECOND);
+    for (Scale scale : Arrays.asList(Scale.CHROMATIC, Scale.MAJOR, Scale.BLUES)) {
+      for (DirectionFilter direction : DirectionFilter.values()) {
+        checkFilter(all, narrower, direction, scale, 14);
+        checkFilter(all, filter, direction, scale, 20);
+      }
+    }
+  }
+
+  public void testFilterPhrasesMatchesPhraseSpace() throws Exception {
+    IntervalFilter filter = new IntervalFilter(Interval.MINOR_SECOND, Interval.MAJOR_THIRD,
+        Interval.PERFECT_FOURTH, Interval.PERFECT_FIFTH);
+    LongList all = new PhraseSpace(Scale.CHROMATIC, filter, DirectionFilter.BOTH, 4, 20).toList();
+    for (Scale scale : Arrays.asList(Scale.MAJOR, Scale.HARMONIC_MINOR)) {
+      LongList expected =
+          new PhraseSpace(scale, filter, DirectionFilter.ASCENDING, 4, 20).toList();
+      LongList actual =
+          QuestionChooser.filterPhrases(all, filter, DirectionFilter.ASCENDING, scale, 20);
+      assertTrue(Arrays.equals(expected.toArray(), actual.toArray()));
+    }
+  }
+
+  // === end of tests ===
+
+  private static void checkFilter(LongList all, IntervalFilter intervals,
+      DirectionFilter direction, Scale scale, int maxRange) {
+    LongList expected = new LongList();
+    for (int i = 0; i < all.size(); i++) {
+      Phrase phrase = new Phrase(all.get(i));
+      if (intervals.allows(phrase) && direction.allows(phrase) &&
+          phrase.canTransposeToScale(scale) && phrase.getRange() <= maxRange) {
+        expected.add(phrase.getCode());
+      }
+    }
+    LongList actual = QuestionChooser.filterPhrases(all, intervals, direction, scale, maxRange);
+    assertTrue(intervals + " " + direction + " " + scale, expected.size() > 0);
+    assertTrue(Arrays.equals(expected.toArray(), actual.toArray()));
+  }
+
+  private static List<Long> sorted(LongSequence phrases) {
+    List<Long> result = new ArrayList<Long>();
+    for (int i = 0; i < phrases.size(); i++) {
+      result.add(phrases.get(i));
+    }
+    Collections.sort(result);
+    return result;
+  }
+}
@@ -0,0 +1,43 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+/**
+ * Verifies that a question only leaves out choices that can't be the answer.
+ */
+public class QuestionTest extends TestCase {
+  private static final IntervalFilter CHOICES =
+      new IntervalFilter(Interval.MINOR_SECOND, Interval.MAJOR_SECOND, Interval.OCTAVE);
+
+  public void testPrunesChoicesForPhraseInTrie() throws Exception {
+    Question question = new Question(new Phrase(new int[] {2, -1}), 60, CHOICES, makeTrie());
+    assertEquals(new IntervalFilter(Interval.MINOR_SECOND, Interval.MAJOR_SECOND),
+        question.getChoices(0));
+    assertEquals(new IntervalFilter(Interval.MINOR_SECOND), question.getChoices(1));
+  }
+
+  public void testKeepsChoicesForPhraseNotInTrie() throws Exception {
+    // for example, a review of a phrase that the current settings don't generate
+    Question question = new Question(new Phrase(new int[] {12, 12}), 48, CHOICES, makeTrie());
+    for (int position = 0; position < question.getAnswerCount(); position++) {
+      assertEquals(CHOICES, question.getChoices(position));
+      assertTrue(question.isCorrect(Interval.OCTAVE, position));
+    }
+  }
+
+  public void testKeepsChoicesForPrefixInTrie() throws Exception {
+    // starts like a phrase in the trie, but ends differently
+    Question question = new Question(new Phrase(new int[] {2, 12}), 48, CHOICES, makeTrie());
+    assertEquals(CHOICES, question.getChoices(1));
+  }
+
+  // === end of tests ===
+
+  private static PhraseTrie makeTrie() {
+    LongList phrases = new LongList();
+    phrases.add(PhraseCode.encode(new int[] {1, 2}));
+    phrases.add(PhraseCode.encode(new int[] {2, -1}));
+    return PhraseTrie.build(phrases);
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Verifies that choosing the next question ahead of time doesn't change which
+ * questions are asked.
+ */
+public class QuizzerTest extends TestCase {
+  private static final int QUESTION_COUNT = 300;
+
+  public void testSameQuestionsAsChoosingAfterScoring() throws Exception {
+    List<Phrase> expected = new ArrayList<Phrase>();
+    ScoreKeeper scoreKeeper = new ScoreKeeper();
+    QuestionChooser chooser = makeChooser(scoreKeeper);
+    for (int i = 0; i < QUESTION_COUNT; i++) {
+      Question question = chooser.chooseQuestion();
+      expected.add(question.getPhrase());
+      scoreKeeper.addResult(question, makeAnswers(question, i));
+    }
+
+    List<Phrase> actual = new ArrayList<Phrase>();
+    scoreKeeper = new ScoreKeeper();
+    FakePlayer player = new FakePlayer();
+    Quizzer quizzer =
+        new Quizzer(makeChooser(scoreKeeper), new IntervalChoices(), player, scoreKeeper);
+    quizzer.startQuestion();
+    for (int i = 0; i < QUESTION_COUNT; i++) {
+      Question question = quizzer.getCurrentQuestion();
+      actual.add(question.getPhrase());
+      for (Interval answer : makeClicks(question, i)) {
+        quizzer.checkAnswer(answer);
+      }
+    }
+
+    assertEquals(expected, actual);
+    assertTrue("no phrase was prepared", player.prepareCount >= QUESTION_COUNT);
+  }
+
+  // === end of tests ===
+
+  private static QuestionChooser makeChooser(ScoreKeeper scoreKeeper) {
+    QuestionChooser chooser = new QuestionChooser(new Random(1), scoreKeeper);
+    chooser.setScale(Scale.CHROMATIC);
+    for (int halfSteps = 1; halfSteps <= 12; halfSteps++) {
+      chooser.setIntervalAllowed(new Interval(halfSteps), true);
+    }
+    return chooser;
+  }
+
+  /**
+   * Returns the first answer given for each interval, which is what gets scored.
+   * Every third question starts with a wrong answer, so that its phrase needs review.
+   */
+  private static List<Interval> makeAnswers(Question question, int questionIndex) {
+    List<Interval> result = new ArrayList<Interval>();
+    for (int position = 0; position < question.getAnswerCount(); position++) {
+      Interval correct = getCorrectAnswer(question, position);
+      if (position == 0 && questionIndex % 3 == 0) {
+        result.add(getWrongAnswer(correct));
+      } else {
+        result.add(correct);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the buttons to click to give the answers from {@link #makeAnswers}
+   * and finish the question.
+   */
+  private static List<Interval> makeClicks(Question question, int questionIndex) {
+    List<Interval> result = new ArrayList<Interval>();
+    for (int position = 0; position < question.getAnswerCount(); position++) {
+      Interval correct = getCorrectAnswer(question, position);
+      if (position == 0 && questionIndex % 3 == 0) {
+        result.add(getWrongAnswer(correct));
+      }
+      result.add(correct);
+    }
+    return result;
+  }
+
+  private static Interval getCorrectAnswer(Question question, int position) {
+    return new Interval(Math.abs(question.getPhrase().getHalfSteps(position)));
+  }
+
+  private static Interval getWrongAnswer(Interval correct) {
+    return new Interval(correct.getHalfSteps() % 12 + 1);
+  }
+
+  private static class FakePlayer implements Player {
+    int prepareCount = 0;
+
+    public Sound[] getSounds() {
+      return new Sound[] {getDefaultSound()};
+    }
+
+    public Sound getDefaultSound() {
+      return new Sound("Piano", 0, 0);
+    }
+
+    public void setSound(Sound sound) {
+    }
+
+    public void play(Phrase phrase, int startNote) {
+    }
+
+    public void prepare(Phrase phrase, int startNote) {
+      prepareCount++;
+    }
+
+    public void shutdown() {
+    }
+  }
+}
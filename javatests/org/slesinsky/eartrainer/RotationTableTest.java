@@ -0,0 +1,60 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Verifies the rotation table against rotating note sets by hand.
+ */
+public class RotationTableTest extends TestCase {
+
+  public void testExamples() throws Exception {
+    assertEquals(12, RotationTable.getPeriod(Scale.MAJOR.getBits()));
+    assertEquals(1, RotationTable.getPeriod(Scale.CHROMATIC.getBits()));
+    assertEquals(2, RotationTable.getPeriod(new Scale("101010101010").getBits()));
+    assertEquals(1, RotationTable.getPeriod(0));
+    assertEquals(0x001, RotationTable.getCanonical(0x800));
+    assertEquals(0x802, RotationTable.rotate(0x401, 1));
+    assertEquals(0x201, RotationTable.rotate(0x402, -1));
+  }
+
+  public void testMatchesBruteForce() throws Exception {
+    int necklaces = 0;
+    for (int bits = 0; bits < RotationTable.SIZE; bits++) {
+      Set<Integer> expected = new TreeSet<Integer>();
+      int rotated = bits;
+      for (int i = 0; i < 12; i++) {
+        expected.add(rotated);
+        rotated = (rotated << 1 | rotated >>> 11) & 0xfff;
+      }
+      assertEquals(expected.size(), RotationTable.getPeriod(bits));
+      assertEquals(((TreeSet<Integer>) expected).first().intValue(),
+          RotationTable.getCanonical(bits));
+      Set<Integer> actual = new TreeSet<Integer>();
+      int previous = -1;
+      for (int i = 0; i < RotationTable.getPeriod(bits); i++) {
+        int rotation = RotationTable.getRotation(bits, i);
+        assertTrue(rotation > previous);
+        actual.add(rotation);
+        previous = rotation;
+      }
+      assertEquals(expected, actual);
+      if (RotationTable.getCanonical(bits) == bits) {
+        necklaces++;
+      }
+    }
+    assertEquals(352, necklaces);
+  }
+
+  public void testContainsAnywhere() throws Exception {
+    assertTrue(RotationTable.containsAnywhere(Scale.MAJOR.getBits(),
+        Scale.MAJOR_PENTATONIC.getBits()));
+    assertTrue(RotationTable.containsAnywhere(Scale.MAJOR.getBits(), 0x801));
+    assertFalse(RotationTable.containsAnywhere(Scale.MAJOR_PENTATONIC.getBits(), 0x003));
+    assertFalse(RotationTable.containsAnywhere(Scale.MAJOR.getBits(),
+        Scale.HARMONIC_MINOR.getBits()));
+  }
+}
@@ -0,0 +1,77 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Verifies the scale catalog's names and its index of named scales.
+ */
+public class ScaleCatalogTest extends TestCase {
+
+  public void testNamedScales() throws Exception {
+    Set<String> names = new HashSet<String>();
+    for (ScaleCatalog.NamedScale scale : ScaleCatalog.getNamedScales()) {
+      assertTrue("duplicate name: " + scale, names.add(scale.getName()));
+      assertEquals(1, scale.getScale().getBits() & 1);
+      assertEquals(scale.getName(), ScaleCatalog.getName(scale.getScale()));
+    }
+    assertEquals("Major", ScaleCatalog.getName(Scale.MAJOR));
+    assertEquals("Blues", ScaleCatalog.getName(Scale.BLUES));
+    assertNull(ScaleCatalog.getName(new Scale("110000000001")));
+  }
+
+  public void testGetScale() throws Exception {
+    assertEquals(new Scale(1), ScaleCatalog.getScale(0));
+    assertEquals(Scale.CHROMATIC, ScaleCatalog.getScale(ScaleCatalog.SIZE - 1));
+  }
+
+  public void testMenuScales() throws Exception {
+    List<ScaleCatalog.NamedScale> menu = ScaleCatalog.getMenuScales();
+    assertEquals("Major Pentatonic", menu.get(0).getName());
+    assertEquals(Scale.MAJOR, ScaleCatalog.findMenuScale(Scale.MAJOR).getScale());
+    assertEquals("Major", ScaleCatalog.findMenuScale(
+        ScaleCatalog.findNamed("Dorian").getScale()).getName());
+    for (ScaleCatalog.NamedScale scale : menu) {
+      assertSame(scale, ScaleCatalog.findMenuScale(scale.getScale()));
+    }
+  }
+
+  public void testFindScalesContainingMatchesScan() throws Exception {
+    for (int index = 0; index < ScaleCatalog.SIZE; index++) {
+      int notes = index << 1 | 1;
+      List<ScaleCatalog.NamedScale> expected = new ArrayList<ScaleCatalog.NamedScale>();
+      for (ScaleCatalog.NamedScale scale : ScaleCatalog.getNamedScales()) {
+        if (ContainmentTable.containsAnywhere(scale.getScale().getBits(), notes)) {
+          expected.add(scale);
+        }
+      }
+      assertEquals(expected, ScaleCatalog.findScalesContaining(notes));
+    }
+  }
+
+  public void testFindScalesContainingPhrase() throws Exception {
+    List<ScaleCatalog.NamedScale> tritone =
+        ScaleCatalog.findScalesContaining(new Phrase(new int[] {6}));
+    assertTrue(tritone.contains(ScaleCatalog.findNamed("Blues")));
+    assertFalse(tritone.contains(ScaleCatalog.findNamed("Major Pentatonic")));
+
+    List<ScaleCatalog.NamedScale> all =
+        ScaleCatalog.findScalesContaining(new Phrase(new int[] {2, 2}));
+    assertTrue(all.contains(ScaleCatalog.findNamed("Major")));
+    assertTrue(all.contains(ScaleCatalog.findNamed("Chromatic")));
+  }
+
+  public void testBadNoteSet() throws Exception {
+    try {
+      ScaleCatalog.findScalesContaining(2);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
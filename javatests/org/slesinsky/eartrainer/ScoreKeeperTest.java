@@ -0,0 +1,66 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Verifies that the score keeper keeps track of which phrases need review.
+ */
+public class ScoreKeeperTest extends TestCase {
+  private static final Phrase FOURTH_UP = new Phrase(new int[] {5});
+  private static final Phrase FIFTH_DOWN = new Phrase(new int[] {-7});
+
+  private ScoreKeeper scoreKeeper;
+
+  @Override
+  protected void setUp() throws Exception {
+    scoreKeeper = new ScoreKeeper();
+  }
+
+  public void testPhrasesToReview() throws Exception {
+    answer(FOURTH_UP, Interval.PERFECT_FOURTH);
+    answer(FIFTH_DOWN, Interval.PERFECT_FOURTH);
+    assertEquals(2, scoreKeeper.getPhraseIdCount());
+    assertEquals(FOURTH_UP.getCode(), scoreKeeper.getPhraseCode(0));
+    assertEquals(FIFTH_DOWN.getCode(), scoreKeeper.getPhraseCode(1));
+    assertEquals(bits(0, 1), scoreKeeper.getPhrasesToReview());
+
+    // right twice in a row
+    answer(FOURTH_UP, Interval.PERFECT_FOURTH);
+    assertEquals(bits(1), scoreKeeper.getPhrasesToReview());
+    answer(FIFTH_DOWN, Interval.PERFECT_FIFTH);
+    answer(FIFTH_DOWN, Interval.PERFECT_FIFTH);
+    assertEquals(bits(), scoreKeeper.getPhrasesToReview());
+
+    answer(FOURTH_UP, Interval.TRITONE);
+    assertEquals(bits(0), scoreKeeper.getPhrasesToReview());
+  }
+
+  public void testIdsSurviveReset() throws Exception {
+    answer(FOURTH_UP, Interval.TRITONE);
+    scoreKeeper.reset();
+    assertEquals(bits(), scoreKeeper.getPhrasesToReview());
+    answer(FIFTH_DOWN, Interval.TRITONE);
+    answer(FOURTH_UP, Interval.TRITONE);
+    assertEquals(FOURTH_UP.getCode(), scoreKeeper.getPhraseCode(0));
+    assertEquals(bits(0, 1), scoreKeeper.getPhrasesToReview());
+  }
+
+  // === end of tests ===
+
+  private void answer(Phrase phrase, Interval answer) {
+    Question question = new Question(phrase, 60, IntervalFilter.DEFAULT);
+    scoreKeeper.addResult(question, Arrays.asList(answer));
+  }
+
+  private static BitSet bits(int... ids) {
+    BitSet result = new BitSet();
+    for (int id : ids) {
+      result.set(id);
+    }
+    return result;
+  }
+}
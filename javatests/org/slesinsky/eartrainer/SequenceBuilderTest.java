@@ -0,0 +1,98 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies the Midi messages for notes that fall between the keys.
+ */
+public class SequenceBuilderTest extends TestCase {
+
+  public void testQuarterTone() throws Exception {
+    SequenceBuilder builder = new SequenceBuilder();
+    builder.addTunedNote(Tuning.EDO_24.getPitch(60, 0));
+    builder.addTunedNote(Tuning.EDO_24.getPitch(60, 1));
+    builder.addTunedNote(Tuning.EDO_24.getPitch(60, -1));
+    assertEquals(Arrays.asList(
+        "cc 101 0", "cc 100 0", "cc 6 2", "cc 38 0", // bend range of 2 half steps
+        "bend 8192", "on 60", "off 60",
+        "bend 6144", "on 61", "off 61", // halfway rounds up, bent down a quarter tone
+        "bend 6144", "on 60", "off 60"),
+        getMessages(builder.getSequence()));
+  }
+
+  public void testThirtyOneSteps() throws Exception {
+    SequenceBuilder builder = new SequenceBuilder();
+    builder.addTunedNote(Tuning.EDO_31.getPitch(60, 1)); // 38.7 cents
+    builder.addTunedNote(Tuning.EDO_31.getPitch(60, 2)); // 77.4 cents
+    builder.addTunedNote(Tuning.EDO_31.getPitch(60, 31)); // an octave
+    assertEquals(Arrays.asList(
+        "cc 101 0", "cc 100 0", "cc 6 2", "cc 38 0",
+        "bend 9778", "on 60", "off 60", // 8192 + 8192 * 38.7 / 200
+        "bend 7267", "on 61", "off 61", // 8192 - 8192 * 22.6 / 200
+        "bend 8192", "on 72", "off 72"),
+        getMessages(builder.getSequence()));
+  }
+
+  public void testBendStaysInRange() throws Exception {
+    SequenceBuilder builder = new SequenceBuilder();
+    for (int steps = 0; steps <= Tuning.MAX_DIVISIONS; steps++) {
+      builder.addTunedNote(new Tuning(Tuning.MAX_DIVISIONS).getPitch(0, steps));
+    }
+    for (String message : getMessages(builder.getSequence())) {
+      if (message.startsWith("bend ")) {
+        int bend = Integer.parseInt(message.substring(5));
+        assertTrue(message, bend >= 8192 - 2048 && bend <= 8192 + 2048);
+      }
+    }
+  }
+
+  public void testProgramChangeResetsBend() throws Exception {
+    SequenceBuilder builder = new SequenceBuilder();
+    builder.addProgramChange(new Sound("Piano", 0, 3));
+    builder.addNote(64);
+    assertEquals(Arrays.asList("program 3", "bend 8192", "on 64", "off 64"),
+        getMessages(builder.getSequence()));
+  }
+
+  // === end of tests ===
+
+  static List<String> getMessages(Sequence sequence) {
+    List<String> result = new ArrayList<String>();
+    for (Track track : sequence.getTracks()) {
+      for (int i = 0; i < track.size(); i++) {
+        MidiMessage message = track.get(i).getMessage();
+        if (message instanceof ShortMessage) {
+          result.add(format((ShortMessage) message));
+        }
+      }
+    }
+    return result;
+  }
+
+  private static String format(ShortMessage message) {
+    assertEquals(SequenceBuilder.CHANNEL, message.getChannel());
+    switch (message.getCommand()) {
+      case ShortMessage.NOTE_ON:
+        return "on " + message.getData1();
+      case ShortMessage.NOTE_OFF:
+        return "off " + message.getData1();
+      case ShortMessage.CONTROL_CHANGE:
+        return "cc " + message.getData1() + " " + message.getData2();
+      case ShortMessage.PROGRAM_CHANGE:
+        return "program " + message.getData1();
+      case ShortMessage.PITCH_BEND:
+        return "bend " + (message.getData1() | message.getData2() << 7);
+      default:
+        return "command " + message.getCommand();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import javax.sound.midi.Sequence;
+
+/**
+ * Verifies that the sequence cache counts hits and evicts old entries.
+ */
+public class SequenceCacheTest extends TestCase {
+  private static final Sound PIANO = new Sound("Piano", 0, 0);
+  private static final Sound ORGAN = new Sound("Organ", 0, 19);
+
+  public void testHitsAndMisses() throws Exception {
+    SequenceCache cache = new SequenceCache(10);
+    assertNull(cache.get(makeKey(2, 60, PIANO)));
+    Sequence sequence = makeSequence();
+    cache.put(makeKey(2, 60, PIANO), sequence);
+    assertSame(sequence, cache.get(makeKey(2, 60, PIANO)));
+    assertNull(cache.get(makeKey(2, 61, PIANO)));
+    assertNull(cache.get(makeKey(2, 60, ORGAN)));
+    assertNull(cache.get(makeKey(3, 60, PIANO)));
+    assertEquals(1, cache.getHits());
+    assertEquals(4, cache.getMisses());
+    assertEquals(0.2, cache.getHitRate(), 1e-9);
+  }
+
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    SequenceCache cache = new SequenceCache(2);
+    cache.put(makeKey(2, 60, PIANO), makeSequence());
+    cache.put(makeKey(3, 60, PIANO), makeSequence());
+    cache.get(makeKey(2, 60, PIANO));
+    cache.put(makeKey(4, 60, PIANO), makeSequence());
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get(makeKey(2, 60, PIANO)));
+    assertNull(cache.get(makeKey(3, 60, PIANO)));
+    assertNotNull(cache.get(makeKey(4, 60, PIANO)));
+  }
+
+  public void testClear() throws Exception {
+    SequenceCache cache = new SequenceCache(2);
+    cache.put(makeKey(2, 60, PIANO), makeSequence());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNull(cache.get(makeKey(2, 60, PIANO)));
+  }
+
+  // === end of tests ===
+
+  private SequenceCache.Key makeKey(int interval, int startNote, Sound sound) {
+    return new SequenceCache.Key(new Phrase(new int[] {interval}), startNote, sound);
+  }
+
+  private Sequence makeSequence() throws Exception {
+    return new SequenceBuilder().getSequence();
+  }
+}
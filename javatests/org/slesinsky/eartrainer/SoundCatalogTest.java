@@ -0,0 +1,54 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import javax.sound.midi.MidiSystem;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Verifies the catalog of sounds in the default soundbank.
+ */
+public class SoundCatalogTest extends TestCase {
+
+  public void testDefaultSoundbank() throws Exception {
+    SoundCatalog catalog = SoundCatalog.of(MidiSystem.getSynthesizer().getDefaultSoundbank());
+    List<Sound> sounds = catalog.getSounds();
+    assertFalse(sounds.isEmpty());
+    Set<Sound> seen = new HashSet<Sound>();
+    for (Sound sound : sounds) {
+      assertEquals(0, sound.bank);
+      assertTrue("duplicate: " + sound, seen.add(sound));
+      assertEquals(sound.program, catalog.getInstrument(sound).getPatch().getProgram());
+    }
+    assertTrue(sounds.contains(catalog.getDefault()));
+    assertSame(catalog.getDefault(), catalog.find(0, catalog.getDefault().program));
+    assertNull(catalog.find(0, 128));
+  }
+
+  public void testImmutable() throws Exception {
+    SoundCatalog catalog = SoundCatalog.of(MidiSystem.getSynthesizer().getDefaultSoundbank());
+    try {
+      catalog.getSounds().clear();
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  public void testNoSoundbank() throws Exception {
+    try {
+      SoundCatalog.of(null);
+      fail();
+    } catch (UnavailableException e) {
+      // expected
+    }
+  }
+
+  public void testSoundEquality() throws Exception {
+    assertEquals(new Sound("Piano", 0, 0), new Sound("Grand Piano", 0, 0));
+    assertFalse(new Sound("Piano", 0, 0).equals(new Sound("Piano", 1, 0)));
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Synthesizer;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time and heap it takes to open a SoundFont file: reading only the
+ * preset headers ({@link SoundCatalog#open}), loading it from the file with the
+ * JDK's loader (which leaves the samples on disk), and loading it from a stream
+ * (which reads every sample into the heap). Then loads one instrument into a
+ * synthesizer from the catalog, which is when its samples are read.
+ *
+ * <p>Usage: SoundFontBenchmark soundfont-file [program]. Needs
+ * --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED on Java 9 and later,
+ * for the synthesizer.
+ */
+public class SoundFontBenchmark {
+  // keeps what was loaded from being collected before the heap is measured
+  private static final List<Object> kept = new ArrayList<Object>();
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("usage: SoundFontBenchmark soundfont-file [program]");
+      System.exit(1);
+    }
+    final File file = new File(args[0]);
+    int program = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+    System.out.printf("%s: %.1f MB%n", file, file.length() / 1e6);
+
+    SoundFontIndex index = SoundFontIndex.open(file);
+    System.out.printf("%d presets, %.1f MB of samples%n", index.getPresets().size(),
+        index.getSampleBytes() / 1e6);
+
+    final SoundCatalog catalog = (SoundCatalog) measure("preset headers", new Task() {
+      public Object run() throws Exception {
+        return SoundCatalog.open(file);
+      }
+    });
+    measure("soundbank from file", new Task() {
+      public Object run() throws Exception {
+        return MidiSystem.getSoundbank(file);
+      }
+    });
+    measure("soundbank from stream", new Task() {
+      public Object run() throws Exception {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+          return MidiSystem.getSoundbank(in);
+        } finally {
+          in.close();
+        }
+      }
+    });
+    kept.clear();
+    kept.add(catalog);
+
+    final Sound sound = catalog.find(0, program);
+    if (sound == null) {
+      System.err.println("no sound for program " + program);
+      System.exit(1);
+    }
+    final Synthesizer synth = MidiSystem.getSynthesizer();
+    PcmRenderer.openStream(synth, PcmRenderer.FORMAT);
+    measure("first instrument (" + sound + ")", new Task() {
+      public Object run() throws Exception {
+        synth.loadInstrument(catalog.getInstrument(sound));
+        return null;
+      }
+    });
+    synth.close();
+  }
+
+  private static Object measure(String name, Task task) throws Exception {
+    long heapBefore = getUsedHeap();
+    long start = System.nanoTime();
+    Object result = task.run();
+    long nanos = System.nanoTime() - start;
+    kept.add(result);
+    long heapAfter = getUsedHeap();
+    System.out.printf("%s: %.1f ms, %.1f MB heap%n", name, nanos / 1e6,
+        (heapAfter - heapBefore) / 1e6);
+    return result;
+  }
+
+  private static long getUsedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private interface Task {
+    Object run() throws Exception;
+  }
+}
@@ -0,0 +1,156 @@
+// Copyright 2010 Brian Slesinsky
+package org.slesinsky.eartrainer;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Verifies reading the presets of a small SoundFont file, written by hand.
+ */
+public class SoundFontIndexTest extends TestCase {
+  private static final int SAMPLE_BYTES = 1000;
+
+  public void testOpen() throws Exception {
+    File file = writeTempFile(makeSoundFont());
+    try {
+      SoundFontIndex index = SoundFontIndex.open(file);
+      assertEquals("Test Font", index.getName());
+      assertEquals(SAMPLE_BYTES, index.getSampleBytes());
+      List<Sound> presets = index.getPresets();
+      assertEquals(3, presets.size());
+      checkSound("Strings", 0, 48, presets.get(0));
+      checkSound("Drums", 128, 0, presets.get(1));
+      checkSound("Piano", 0, 0, presets.get(2));
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testCatalog() throws Exception {
+    File file = writeTempFile(makeSoundFont());
+    try {
+      SoundCatalog catalog = SoundCatalog.open(file);
+      List<Sound> sounds = catalog.getSounds();
+      assertEquals(2, sounds.size());
+      checkSound("Piano", 0, 0, sounds.get(0));
+      checkSound("Strings", 0, 48, sounds.get(1));
+      assertSame(sounds.get(0), catalog.getDefault());
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testNotSoundFont() throws Exception {
+    checkUnavailable(ByteBuffer.wrap("RIFF\4\0\0\0WAVE".getBytes("US-ASCII")));
+    checkUnavailable(ByteBuffer.wrap("not a riff file".getBytes("US-ASCII")));
+  }
+
+  public void testTruncated() throws Exception {
+    ByteBuffer data = makeSoundFont();
+    data.limit(data.limit() - 50);
+    checkUnavailable(data);
+  }
+
+  // === private methods ===
+
+  private static void checkSound(String name, int bank, int program, Sound actual) {
+    assertEquals(name, actual.name);
+    assertEquals(bank, actual.bank);
+    assertEquals(program, actual.program);
+  }
+
+  private static void checkUnavailable(ByteBuffer data) {
+    try {
+      SoundFontIndex.parse(data);
+      fail();
+    } catch (UnavailableException e) {
+      // expected
+    }
+  }
+
+  private static File writeTempFile(ByteBuffer data) throws IOException {
+    File file = File.createTempFile("test", ".sf2");
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(data.array(), 0, data.limit());
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  /**
+   * Returns the chunks that the index reads, with empty sample data and presets
+   * that aren't sorted.
+   */
+  private static ByteBuffer makeSoundFont() {
+    ByteBuffer out = ByteBuffer.allocate(2000).order(ByteOrder.LITTLE_ENDIAN);
+    putId(out, "RIFF");
+    int riffSize = startChunk(out);
+    putId(out, "sfbk");
+
+    putId(out, "LIST");
+    int infoSize = startChunk(out);
+    putId(out, "INFO");
+    putId(out, "INAM");
+    out.putInt(10);
+    putString(out, "Test Font", 10);
+    endChunk(out, infoSize);
+
+    putId(out, "LIST");
+    int sampleListSize = startChunk(out);
+    putId(out, "sdta");
+    putId(out, "smpl");
+    out.putInt(SAMPLE_BYTES);
+    out.position(out.position() + SAMPLE_BYTES);
+    endChunk(out, sampleListSize);
+
+    putId(out, "LIST");
+    int presetListSize = startChunk(out);
+    putId(out, "pdta");
+    putId(out, "phdr");
+    out.putInt(38 * 4);
+    putPreset(out, "Strings", 0, 48);
+    putPreset(out, "Drums", 128, 0);
+    putPreset(out, "Piano", 0, 0);
+    putPreset(out, "EOP", 0, 0);
+    endChunk(out, presetListSize);
+
+    endChunk(out, riffSize);
+    out.flip();
+    return out;
+  }
+
+  private static void putPreset(ByteBuffer out, String name, int bank, int program) {
+    putString(out, name, 20);
+    out.putShort((short) program);
+    out.putShort((short) bank);
+    out.put(new byte[14]);
+  }
+
+  private static void putId(ByteBuffer out, String id) {
+    putString(out, id, 4);
+  }
+
+  private static void putString(ByteBuffer out, String value, int length) {
+    for (int i = 0; i < length; i++) {
+      out.put(i < value.length() ? (byte) value.charAt(i) : 0);
+    }
+  }
+
+  private static int startChunk(ByteBuffer out) {
+    int sizePosition = out.position();
+    out.putInt(0);
+    return sizePosition;
+  }
+
+  private static void endChunk(ByteBuffer out, int sizePosition) {
+    out.putInt(sizePosition, out.position() - sizePosition - 4);
+  }
+}